@@ -0,0 +1,84 @@
+package me.mazeika.uconfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.InvalidMarkException;
+
+/**
+ * An input stream that reads directly from a {@link ByteBuffer}, without
+ * copying its contents. Reading consumes the given buffer, so callers should
+ * pass in a {@link ByteBuffer#duplicate() duplicate} if its position must be
+ * kept.
+ */
+class ByteBufferInputStream extends InputStream
+{
+    private final ByteBuffer buf;
+
+    ByteBufferInputStream(ByteBuffer buf)
+    {
+        this.buf = buf;
+    }
+
+    @Override
+    public int read()
+    {
+        return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+    {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (! buf.hasRemaining()) {
+            return -1;
+        }
+
+        len = Math.min(len, buf.remaining());
+        buf.get(b, off, len);
+
+        return len;
+    }
+
+    @Override
+    public long skip(long n)
+    {
+        final int skipped = (int) Math.max(0, Math.min(n, buf.remaining()));
+
+        buf.position(buf.position() + skipped);
+
+        return skipped;
+    }
+
+    @Override
+    public int available()
+    {
+        return buf.remaining();
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit)
+    {
+        buf.mark();
+    }
+
+    @Override
+    public synchronized void reset() throws IOException
+    {
+        try {
+            buf.reset();
+        }
+        catch (InvalidMarkException e) {
+            throw new IOException("Resetting to invalid mark", e);
+        }
+    }
+}
@@ -1,10 +1,31 @@
 package me.mazeika.uconfig;
 
+import me.mazeika.uconfig.parsing.ParserType;
+
 import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 public abstract class Config
 {
+    /**
+     * Creates a builder for configs that need options beyond those taken by
+     * the static factory methods, such as a {@link Schema}.
+     *
+     * @return a new builder
+     */
+    public static ConfigBuilder builder()
+    {
+        return new ConfigBuilder();
+    }
+
     /**
      * Creates a config for the given {@code file}. The file <em>must</em> have
      * the file extension appropriate to its contents. Supported file types
@@ -34,7 +55,7 @@ public abstract class Config
      */
     public static Config create(File file, boolean lazyLoad)
     {
-        return new UConfig(file, lazyLoad);
+        return builder().lazyLoad(lazyLoad).create(file);
     }
 
     /**
@@ -84,6 +105,167 @@ public abstract class Config
         return create(filePath, true);
     }
 
+    /**
+     * Asynchronously creates a config for the given {@code file}, reading and
+     * parsing it on the given {@code executor} so that the caller never blocks
+     * on IO. See {@link #create(File, boolean)} for requirements.
+     *
+     * @param file the file to load and parse
+     * @param executor the executor to load and parse the file on
+     *
+     * @return a future completed with the loaded config, or completed
+     *         exceptionally if it could not be created or loaded
+     */
+    public static CompletableFuture<Config> createAsync(File file,
+                                                        Executor executor)
+    {
+        return builder().createAsync(file, executor);
+    }
+
+    /**
+     * Creates a lazily loaded config for the given {@code file} that is warmed
+     * in the background: loading starts immediately on the given
+     * {@code executor}, rather than on whichever thread reads the config
+     * first. Reads made before the load finishes wait for it instead of
+     * starting another one. See {@link #create(File, boolean)} for
+     * requirements.
+     *
+     * @param file the file to load and parse
+     * @param executor the executor to load and parse the file on
+     *
+     * @return a new config
+     *
+     * @throws UnsupportedOperationException if the given file is not of a
+     *                                       supported type
+     */
+    public static Config createWarm(File file, Executor executor)
+    {
+        return builder().warm(executor).create(file);
+    }
+
+    /**
+     * Creates a config by parsing the given stream as the given {@code type}.
+     * The stream is read and parsed immediately, as it cannot be read again
+     * later. It is read fully, but not closed.
+     *
+     * @param in the stream to parse
+     * @param type the type of the stream's contents, or {@code null} if it
+     *             should be sniffed (see {@link
+     *             me.mazeika.uconfig.parsing.Parser#detect(InputStream)})
+     *
+     * @return a new config
+     */
+    public static Config create(InputStream in, ParserType type)
+    {
+        return builder().create(in, type);
+    }
+
+    /**
+     * Calls {@link #create(InputStream, ParserType)}, sniffing the type from
+     * the stream's contents.
+     *
+     * @param in the stream to parse
+     *
+     * @return a new config
+     */
+    public static Config create(InputStream in)
+    {
+        return create(in, null);
+    }
+
+    /**
+     * Creates a config for the given classpath {@code resource}, which is read
+     * directly from the classpath (e.g. from inside a jar). If the resource's
+     * extension is not one listed in {@link #create(File, boolean)}, its type
+     * is sniffed from its contents (see
+     * {@link me.mazeika.uconfig.parsing.Parser#detect(InputStream)}).
+     *
+     * @param resource the resource path, relative to the classpath root
+     * @param lazyLoad whether the resource should be lazily loaded
+     *
+     * @return a new config
+     *
+     * @throws IllegalArgumentException if the resource does not exist
+     */
+    public static Config fromClasspath(String resource, boolean lazyLoad)
+    {
+        return builder().lazyLoad(lazyLoad).fromClasspath(resource);
+    }
+
+    /**
+     * Calls {@link #fromClasspath(String, boolean)}, passing in {@code true}
+     * for lazy loading.
+     *
+     * @param resource the resource path, relative to the classpath root
+     *
+     * @return a new config
+     *
+     * @throws IllegalArgumentException if the resource does not exist
+     */
+    public static Config fromClasspath(String resource)
+    {
+        return fromClasspath(resource, true);
+    }
+
+    /**
+     * Creates a config by parsing the given bytes as the given {@code type}.
+     * The bytes are parsed immediately and in place, without being copied.
+     *
+     * @param bytes the bytes to parse
+     * @param type the type of the bytes, or {@code null} if it should be
+     *             sniffed (see {@link
+     *             me.mazeika.uconfig.parsing.Parser#detect(InputStream)})
+     *
+     * @return a new config
+     */
+    public static Config fromBytes(byte[] bytes, ParserType type)
+    {
+        return builder().fromBytes(bytes, type);
+    }
+
+    /**
+     * Calls {@link #fromBytes(byte[], ParserType)}, sniffing the type from the
+     * bytes.
+     *
+     * @param bytes the bytes to parse
+     *
+     * @return a new config
+     */
+    public static Config fromBytes(byte[] bytes)
+    {
+        return fromBytes(bytes, null);
+    }
+
+    /**
+     * Creates a config by parsing the remaining bytes of the given buffer as
+     * the given {@code type}. The bytes are parsed immediately and in place,
+     * without being copied, and the buffer's position is left untouched.
+     *
+     * @param bytes the buffer to parse
+     * @param type the type of the bytes, or {@code null} if it should be
+     *             sniffed (see {@link
+     *             me.mazeika.uconfig.parsing.Parser#detect(InputStream)})
+     *
+     * @return a new config
+     */
+    public static Config fromBytes(ByteBuffer bytes, ParserType type)
+    {
+        return builder().fromBytes(bytes, type);
+    }
+
+    /**
+     * Calls {@link #fromBytes(ByteBuffer, ParserType)}, sniffing the type from
+     * the bytes.
+     *
+     * @param bytes the buffer to parse
+     *
+     * @return a new config
+     */
+    public static Config fromBytes(ByteBuffer bytes)
+    {
+        return fromBytes(bytes, null);
+    }
+
     /**
      * Gets a uconfig value at the specified key. The key is in a special dot
      * notation, as explained below. {@code defaultValue} is returned if no
@@ -215,14 +397,26 @@ public abstract class Config
      * As visible for {@code "root.path.item.1"}, the trailing index is
      * necessary when elements of the same name are within the same parent.
      * <p>
-     * <strong>Note:</strong> Due to the internal workings of the XML parser,
-     * avoid naming elements or attributes {@code "content"}.
+     * <strong>Note:</strong> If an element has both a child element and an
+     * attribute of the same name, the child element is returned. Precede the
+     * name with a {@code '@'} (e.g. {@code "root.path.item.0.@attr"}) to
+     * always get the attribute.
      *
      * @param key the key in special dot notation
      * @param defaultValue the default value
      * @param <T> the desired type of the value
      *
      * @return the value at the given key
+     *
+     * @throws ConfigTypeException if the value and the non-null default value
+     *                             are of different kinds, as in a string
+     *                             read with a number default; the kinds are
+     *                             string, number, boolean, map and list, so
+     *                             a default of any other type, or a number of
+     *                             another class, as in {@code (Number) 0L},
+     *                             never throws
+     * @throws java.io.UncheckedIOException if the config cannot be read
+     * @throws ParseException if the config cannot be parsed
      */
     public abstract <T> T getOrDefault(String key, T defaultValue);
 
@@ -299,4 +493,122 @@ public abstract class Config
      * @see #get(String)
      */
     public abstract <T> Optional<T> getWithIndices(String key, int... indices);
+
+    /**
+     * Streams the children of the list or map at the given {@code prefix}, in
+     * order, as configs of their own. Each child config is a lightweight view
+     * sharing this config's tree, so nothing is copied, and keys given to it
+     * are relative to the child. For example, for the JSON
+     * {@code { "routes": [ { "host": "a" }, { "host": "b" } ] }},
+     * {@code stream("routes").map(c -> c.getOrDefault("host", ""))} yields
+     * {@code "a"} and {@code "b"}.
+     * <p>
+     * Streams over lists split evenly, so they are well suited to parallel
+     * processing of large lists. The stream is empty if the prefix is not
+     * found or is not a list or map.
+     *
+     * @param prefix the key of the list or map in special dot notation; blank
+     *               for the root
+     *
+     * @return a stream of the children
+     *
+     * @see #values(String)
+     */
+    public abstract Stream<Config> stream(String prefix);
+
+    /**
+     * Same as {@link #stream(String)}, however the children's values are
+     * streamed directly, as they are stored. Nested lists and maps are given
+     * as {@link List}s and {@link java.util.Map}s.
+     *
+     * @param prefix the key of the list or map in special dot notation; blank
+     *               for the root
+     * @param <T> the desired type of the values
+     *
+     * @return a stream of the children's values
+     *
+     * @see #stream(String)
+     */
+    public abstract <T> Stream<T> values(String prefix);
+
+    /**
+     * Performs the given {@code action} for each child of the list or map at
+     * the given {@code prefix}, in order. The action is given the child's key
+     * (the index for list elements) and a view of the child, as in
+     * {@link #stream(String)}. Nothing is done if the prefix is not found or
+     * is not a list or map.
+     *
+     * @param prefix the key of the list or map in special dot notation; blank
+     *               for the root
+     * @param action the action to perform for each child
+     */
+    public abstract void forEach(String prefix,
+                                 BiConsumer<String, Config> action);
+
+    /**
+     * Gets the keys of the map at the given {@code prefix}, or the indices of
+     * the list at it. The returned set is a read-only view that is not copied
+     * from the tree. Keys are as they are stored, so any {@code '.'} or
+     * {@code '#'} in them must be escaped before they are used in a key.
+     *
+     * @param prefix the key of the list or map in special dot notation; blank
+     *               for the root
+     *
+     * @return the keys; empty if the prefix is not found or is not a list or
+     *         map
+     */
+    public abstract Set<String> keys(String prefix);
+
+    /**
+     * Describes, step by step, how the given {@code key} is resolved against
+     * this config: what is found at each part of the key, and where in the
+     * input it came from if the config was created with
+     * {@link ConfigBuilder#trackLocations(boolean)}. If the key is not
+     * found, the description says at which part and why. Meant for debugging
+     * bad configs; it is not fast, and its format may change.
+     *
+     * @param key the key in special dot notation
+     *
+     * @return the description, over several lines
+     */
+    public abstract String explain(String key);
+
+    /**
+     * Gets a handle to the value at the given {@code key}, for values read so
+     * often that even looking up the key is too slow, such as feature flags
+     * read on every request. The value is looked up once, as by
+     * {@link #getOrDefault(String, Object)}, and again only when this
+     * config's values are replaced, by a commit or by loading it again after
+     * it was unloaded. Handles are cached, so asking again for the same key
+     * and default value returns the same handle. See {@link ConfigConstant}.
+     *
+     * @param key the key in special dot notation
+     * @param defaultValue the default value
+     * @param <T> the desired type of the value
+     *
+     * @return the handle
+     *
+     * @throws ConfigTypeException if the value and the non-null default value
+     *                             are of different kinds, as for
+     *                             {@link #getOrDefault(String, Object)}
+     * @throws java.io.UncheckedIOException if the config cannot be read
+     * @throws ParseException if the config cannot be parsed
+     */
+    public abstract <T> ConfigConstant<T> constant(String key,
+                                                   T defaultValue);
+
+    /**
+     * Starts editing this config. Changes are collected by the returned
+     * editor and, once committed, replace both this config's values and the
+     * contents of its file. See {@link ConfigEditor}.
+     *
+     * @return a new editor
+     *
+     * @throws UnsupportedOperationException if this config was not created
+     *                                       from a file, or resolves
+     *                                       references or includes, which
+     *                                       writing it back would replace
+     *                                       with their values
+     */
+    public abstract ConfigEditor edit();
 }
@@ -0,0 +1,371 @@
+package me.mazeika.uconfig;
+
+import me.mazeika.uconfig.parsing.Includes;
+import me.mazeika.uconfig.parsing.Parser;
+import me.mazeika.uconfig.parsing.ParserType;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Creates configs with options beyond those of the static factory methods in
+ * {@link Config}. Set the desired options, then call one of the
+ * {@code create}/{@code from} methods, which work the same as their
+ * counterparts in {@link Config}. A builder may be reused to create several
+ * configs with the same options.
+ * <p>
+ * One use of this class may be as follows:
+ * {@code Config.builder().schema(schema).lazyLoad(false).create(file);}
+ */
+public final class ConfigBuilder
+{
+    private boolean lazyLoad = true;
+    private Executor warmExecutor;
+    private Schema schema;
+    private boolean interning;
+    private boolean interpolating;
+    private boolean trackingLocations;
+    private Includes includes;
+    private boolean parallel;
+
+    ConfigBuilder()
+    {
+    }
+
+    /**
+     * Sets whether created configs are lazily loaded. Defaults to
+     * {@code true}. Configs created from streams or bytes are always loaded
+     * immediately.
+     *
+     * @param lazyLoad whether configs should be lazily loaded
+     *
+     * @return this builder
+     */
+    public ConfigBuilder lazyLoad(boolean lazyLoad)
+    {
+        this.lazyLoad = lazyLoad;
+        return this;
+    }
+
+    /**
+     * Makes created configs lazily loaded, but warmed in the background on the
+     * given {@code executor}. See {@link Config#createWarm(File, Executor)}.
+     *
+     * @param executor the executor to load configs on, or {@code null} to not
+     *                 warm them
+     *
+     * @return this builder
+     */
+    public ConfigBuilder warm(Executor executor)
+    {
+        this.warmExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the schema created configs are validated against and converted by
+     * when they are loaded. See {@link Schema}.
+     *
+     * @param schema the schema, or {@code null} for none
+     *
+     * @return this builder
+     */
+    public ConfigBuilder schema(Schema schema)
+    {
+        this.schema = schema;
+        return this;
+    }
+
+    /**
+     * Sets whether keys and short scalar values are deduplicated while
+     * created configs are parsed, so that equal ones share a single instance.
+     * Defaults to {@code false}. This greatly reduces the memory held by
+     * configs that repeat the same keys and values many times, such as long
+     * lists of similar maps, at a small cost to load time.
+     *
+     * @param interning whether to deduplicate keys and values
+     *
+     * @return this builder
+     */
+    public ConfigBuilder intern(boolean interning)
+    {
+        this.interning = interning;
+        return this;
+    }
+
+    /**
+     * Sets whether {@code ${name}} references in the string values of created
+     * configs are resolved when they are loaded. Defaults to {@code false}.
+     * A name refers to another key of the config (in special dot notation, or
+     * the whole key for properties files), a system property or an
+     * environment variable, tried in that order, and
+     * {@code ${name:-fallback}} gives a fallback for when it is not found,
+     * which may hold references of its own.
+     * Use <code>$${</code> for a literal <code>${</code>. References are resolved
+     * once, so reads cost the same as for any other value.
+     * <p>
+     * Loading fails with a {@link ParseException} if a reference cannot be
+     * resolved, or if references form a cycle.
+     *
+     * @param interpolating whether to resolve references
+     *
+     * @return this builder
+     */
+    public ConfigBuilder interpolate(boolean interpolating)
+    {
+        this.interpolating = interpolating;
+        return this;
+    }
+
+    /**
+     * Sets whether the line and column of every value are recorded while
+     * created configs are parsed, for {@link Config#explain(String)} to show.
+     * Defaults to {@code false}. This roughly doubles the memory held by a
+     * config, but does not slow down reads. Syntax errors report their line
+     * and column either way. Properties files do not record locations.
+     *
+     * @param trackingLocations whether to record locations
+     *
+     * @return this builder
+     */
+    public ConfigBuilder trackLocations(boolean trackingLocations)
+    {
+        this.trackingLocations = trackingLocations;
+        return this;
+    }
+
+    /**
+     * Sets whether include directives in created YAML and JSON configs are
+     * resolved when they are loaded. Defaults to {@code false}. A directive
+     * is either a value tagged {@code !include}, as in
+     * {@code db: !include db.yml}, or a map holding nothing but an
+     * {@code $include} key, as in {@code "db": {"$include": "db.json"}}, and
+     * is replaced by the tree of the YAML or JSON file it names. Relative
+     * paths are resolved against the directory of the including file, or the
+     * working directory for configs not created from files.
+     * <p>
+     * Included files are read in parallel, and their parsed trees are cached
+     * for as long as they are unchanged, by every config this builder
+     * creates. Reloading a config after one of its included files changed
+     * therefore only parses that file and the config's own. Loading fails
+     * with a {@link ParseException} if files include each other in a cycle.
+     * Configs with resolved includes cannot be edited.
+     *
+     * @param resolvingIncludes whether to resolve include directives
+     *
+     * @return this builder
+     */
+    public ConfigBuilder resolveIncludes(boolean resolvingIncludes)
+    {
+        if (! resolvingIncludes) {
+            includes = null;
+        }
+        else if (includes == null) {
+            includes = new Includes();
+        }
+
+        return this;
+    }
+
+    /**
+     * Sets whether large YAML and JSON configs are parsed on several cores.
+     * Defaults to {@code false}. The document is read whole and split at its
+     * top-level entries or list items, which are parsed on the common
+     * fork/join pool and put together into the same tree a sequential parse
+     * gives. Worth it for documents of many megabytes with many top-level
+     * entries, such as routing tables; smaller documents, and ones that
+     * cannot be split, are parsed sequentially anyway. Documents are always
+     * parsed sequentially while {@link #trackLocations(boolean) tracking
+     * locations}.
+     *
+     * @param parallel whether to parse large configs in parallel
+     *
+     * @return this builder
+     */
+    public ConfigBuilder parseInParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Same as {@link Config#create(File, boolean)}, with this builder's
+     * options.
+     *
+     * @param file the file to load and parse
+     *
+     * @return a new config
+     *
+     * @throws UnsupportedOperationException if the given file is not of a
+     *                                       supported type
+     */
+    public Config create(File file)
+    {
+        return create(new FileSource(file),
+                Parser.create(file.getName()));
+    }
+
+    /**
+     * Same as {@link Config#create(String, boolean)}, with this builder's
+     * options.
+     *
+     * @param filePath the path to the file to load and parse
+     *
+     * @return a new config
+     *
+     * @throws UnsupportedOperationException if the file at the given path is
+     *                                       not of a supported type
+     */
+    public Config create(String filePath)
+    {
+        return create(new File(filePath));
+    }
+
+    /**
+     * Same as {@link Config#createAsync(File, Executor)}, with this
+     * builder's options. The lazy loading and warming options are ignored.
+     *
+     * @param file the file to load and parse
+     * @param executor the executor to load and parse the file on
+     *
+     * @return a future completed with the loaded config
+     */
+    public CompletableFuture<Config> createAsync(File file, Executor executor)
+    {
+        final LoadOptions options = options();
+
+        return CompletableFuture.supplyAsync(() -> new UConfig(
+                new FileSource(file), Parser.create(file.getName()),
+                false, options), executor);
+    }
+
+    /**
+     * Same as {@link Config#create(InputStream, ParserType)}, with this
+     * builder's options.
+     *
+     * @param in the stream to parse
+     * @param type the type of the stream's contents, or {@code null} if it
+     *             should be sniffed
+     *
+     * @return a new config
+     */
+    public Config create(InputStream in, ParserType type)
+    {
+        return new UConfig(() -> new FilterInputStream(in) {
+            @Override
+            public void close()
+            {
+                // the stream belongs to the caller
+            }
+        }, parser(type), false, options());
+    }
+
+    /**
+     * Same as {@link Config#fromClasspath(String, boolean)}, with this
+     * builder's options.
+     *
+     * @param resource the resource path, relative to the classpath root
+     *
+     * @return a new config
+     *
+     * @throws IllegalArgumentException if the resource does not exist
+     */
+    public Config fromClasspath(String resource)
+    {
+        final String name = resource.startsWith("/")
+                ? resource.substring(1) : resource;
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+        if (loader == null || loader.getResource(name) == null) {
+            loader = Config.class.getClassLoader();
+        }
+
+        if (loader.getResource(name) == null) {
+            throw new IllegalArgumentException(
+                    "Classpath resource not found: " + resource);
+        }
+
+        final ClassLoader resourceLoader = loader;
+
+        return create(() -> resourceLoader.getResourceAsStream(name),
+                parser(Parser.typeOf(name)));
+    }
+
+    /**
+     * Same as {@link Config#fromBytes(byte[], ParserType)}, with this
+     * builder's options.
+     *
+     * @param bytes the bytes to parse
+     * @param type the type of the bytes, or {@code null} if it should be
+     *             sniffed
+     *
+     * @return a new config
+     */
+    public Config fromBytes(byte[] bytes, ParserType type)
+    {
+        return new UConfig(() -> new ByteArrayInputStream(bytes),
+                parser(type), false, options());
+    }
+
+    /**
+     * Same as {@link Config#fromBytes(ByteBuffer, ParserType)}, with this
+     * builder's options.
+     *
+     * @param bytes the buffer to parse
+     * @param type the type of the bytes, or {@code null} if it should be
+     *             sniffed
+     *
+     * @return a new config
+     */
+    public Config fromBytes(ByteBuffer bytes, ParserType type)
+    {
+        return new UConfig(() -> new ByteBufferInputStream(bytes.duplicate()),
+                parser(type), false, options());
+    }
+
+    /**
+     * Creates a lazily loaded config for the given {@code file} with this
+     * builder's options, ignoring the lazy loading and warming options.
+     *
+     * @param file the file to load and parse
+     *
+     * @return a new config
+     *
+     * @throws UnsupportedOperationException if the given file is not of a
+     *                                       supported type
+     */
+    UConfig createLazy(File file)
+    {
+        return new UConfig(new FileSource(file),
+                Parser.create(file.getName()), true, options());
+    }
+
+    /**
+     * Creates a config for a source that can be reopened, honoring the lazy
+     * loading and warming options.
+     */
+    private Config create(Source source, Parser parser)
+    {
+        if (warmExecutor != null) {
+            return new UConfig(source, parser, warmExecutor, options());
+        }
+
+        return new UConfig(source, parser, lazyLoad, options());
+    }
+
+    private static Parser parser(ParserType type)
+    {
+        return type == null ? null : Parser.create(type);
+    }
+
+    private LoadOptions options()
+    {
+        return new LoadOptions(schema, interning, interpolating,
+                trackingLocations, includes, parallel);
+    }
+}
@@ -0,0 +1,80 @@
+package me.mazeika.uconfig;
+
+/**
+ * A value of a config that is read far more often than the config changes,
+ * such as a feature flag or a buffer size, as returned by
+ * {@link Config#constant(String, Object)}. Its value is looked up once, and
+ * again only when the config's tree is replaced, so {@link #get()} costs a
+ * single field read rather than a lookup of the key.
+ * <p>
+ * The value is held in a volatile field. Reading one is an ordinary load on
+ * common hardware, and unlike a value copied into a field of the caller's,
+ * it sees the value committed by {@link ConfigEditor#commit()} or loaded
+ * again after the config was unloaded.
+ * <p>
+ * Reading a constant neither loads the config nor counts as a use of it.
+ * When a lazily loaded config is unloaded, its constants keep the values
+ * they had, even if the file has changed since, until something else reads
+ * the config and so loads it again.
+ *
+ * @param <T> the type of the value
+ */
+public final class ConfigConstant<T>
+{
+    private final String key;
+    private final T defaultValue;
+    private volatile T value;
+
+    ConfigConstant(String key, T defaultValue, T value)
+    {
+        this.key = key;
+        this.defaultValue = defaultValue;
+        this.value = value;
+    }
+
+    /**
+     * Gets the value.
+     *
+     * @return the value at the key, or the default value if there is none
+     */
+    public T get()
+    {
+        return value;
+    }
+
+    /**
+     * Gets the key the value is read from.
+     *
+     * @return the key in special dot notation
+     */
+    public String getKey()
+    {
+        return key;
+    }
+
+    /**
+     * Looks the value up again in the given config, whose tree was replaced.
+     * A value that is no longer of the default value's type, or that can no
+     * longer be converted to it, such as a properties value that is not a
+     * number, reads as the default, as there is no reader to throw to. This
+     * never throws, so that it cannot abort the load or commit that replaced
+     * the tree.
+     *
+     * @param config the config the constant was made by
+     */
+    void refresh(Config config)
+    {
+        try {
+            value = config.getOrDefault(key, defaultValue);
+        }
+        catch (RuntimeException e) {
+            value = defaultValue;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return key + "=" + value;
+    }
+}
@@ -0,0 +1,435 @@
+package me.mazeika.uconfig;
+
+import me.mazeika.uconfig.parsing.ParserType;
+import me.mazeika.uconfig.parsing.XMLElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The differences between two configs, as found by
+ * {@link #compare(Config, Config)}: the keys, in special dot notation, that
+ * were added, removed, or changed going from the first config to the second.
+ * A key whose value is a map or list is reported as a whole when it is added
+ * or removed, rather than each key under it.
+ * <p>
+ * Configs of different types can be compared, in which case values are
+ * compared by their string form, so that the text {@code 8080} in an XML
+ * file and the number {@code 8080} in a YAML file are equal. An XML element
+ * compares as its text if it has nothing else, and the keys of a properties
+ * file are split at their dots when compared against another type. Maps
+ * compare regardless of the order of their keys.
+ * <p>
+ * The diff can also be run from the command line, with the two files as
+ * arguments: {@code java -jar uconfig.jar old.xml new.yml}. It prints the
+ * differences, and exits with {@code 1} if there are any and {@code 0} if
+ * there are none.
+ */
+public final class ConfigDiff
+{
+    private final List<String> added = new ArrayList<>();
+    private final List<String> removed = new ArrayList<>();
+    private final List<String> changed = new ArrayList<>();
+
+    private ConfigDiff()
+    {
+    }
+
+    /**
+     * Compares two configs. Both are loaded, if they are not already.
+     * <p>
+     * Each subtree of both configs is hashed once, so that subtrees whose
+     * hashes match are skipped without being walked, and the time taken
+     * mostly depends on how much changed rather than on the size of the
+     * configs. Subtrees with equal hashes are taken to be equal, so a hash
+     * collision, which is astronomically unlikely, would hide a change.
+     *
+     * @param a the config to compare from
+     * @param b the config to compare to
+     *
+     * @return the differences
+     *
+     * @throws IllegalArgumentException if a config was not created by the
+     *                                  factory methods of {@link Config}
+     */
+    public static ConfigDiff compare(Config a, Config b)
+    {
+        if (! (a instanceof UConfig) || ! (b instanceof UConfig)) {
+            throw new IllegalArgumentException(
+                    "Only configs created by Config can be compared");
+        }
+
+        final UConfig from = (UConfig) a;
+        final UConfig to = (UConfig) b;
+        final ParserType fromType = from.type();
+        final ParserType toType = to.type();
+        final boolean lenient = fromType != toType;
+        final ConfigDiff diff = new ConfigDiff();
+
+        new Walk(lenient).diff("", normalize(from.tree(), fromType, lenient),
+                normalize(to.tree(), toType, lenient), diff);
+
+        return diff;
+    }
+
+    /**
+     * Gets the keys present in the second config but not the first.
+     *
+     * @return the keys, in the order found
+     */
+    public List<String> getAdded()
+    {
+        return Collections.unmodifiableList(added);
+    }
+
+    /**
+     * Gets the keys present in the first config but not the second.
+     *
+     * @return the keys, in the order found
+     */
+    public List<String> getRemoved()
+    {
+        return Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * Gets the keys present in both configs with different values. The empty
+     * key stands for the root, when the configs differ as a whole, such as a
+     * map against a list.
+     *
+     * @return the keys, in the order found
+     */
+    public List<String> getChanged()
+    {
+        return Collections.unmodifiableList(changed);
+    }
+
+    /**
+     * Gets whether the configs are equal.
+     *
+     * @return {@code true} if nothing was added, removed or changed
+     */
+    public boolean isEmpty()
+    {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    /**
+     * Lists the differences, one per line, with added keys prefixed by
+     * {@code '+'}, removed keys by {@code '-'} and changed keys by
+     * {@code '~'}.
+     */
+    @Override
+    public String toString()
+    {
+        final StringBuilder out = new StringBuilder();
+
+        for (String key : added) {
+            out.append("+ ").append(key).append('\n');
+        }
+
+        for (String key : removed) {
+            out.append("- ").append(key).append('\n');
+        }
+
+        for (String key : changed) {
+            out.append("~ ").append(key).append('\n');
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Compares two config files, printing the differences.
+     *
+     * @param args the paths of the file to compare from and the file to
+     *             compare to
+     */
+    public static void main(String[] args)
+    {
+        if (args.length != 2) {
+            System.err.println("Usage: java -jar uconfig.jar <from> <to>");
+            System.exit(2);
+        }
+
+        final ConfigDiff diff;
+
+        try {
+            diff = compare(Config.create(args[0], false),
+                    Config.create(args[1], false));
+        }
+        catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        System.out.print(diff);
+        System.exit(diff.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Splits the keys of a properties file at their dots, when compared
+     * against another type. A key that extends another, such as {@code a.b}
+     * when there is also {@code a}, is kept whole.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object normalize(Object tree, ParserType type,
+                                    boolean lenient)
+    {
+        if (! lenient || type != ParserType.PROPERTIES
+                || ! (tree instanceof Map)) {
+            return tree;
+        }
+
+        final Map<?, ?> flat = (Map<?, ?>) tree;
+        final Map<String, Object> nested = new LinkedHashMap<>();
+
+        for (Map.Entry<?, ?> e : flat.entrySet()) {
+            final String key = String.valueOf(e.getKey());
+            Map<String, Object> map = nested;
+            int start = 0;
+            int dot;
+
+            while ((dot = key.indexOf('.', start)) >= 0
+                    && ! flat.containsKey(key.substring(0, dot))) {
+                map = (Map<String, Object>) map.computeIfAbsent(
+                        key.substring(start, dot),
+                        k -> new LinkedHashMap<String, Object>());
+                start = dot + 1;
+            }
+
+            map.put(key.substring(start), e.getValue());
+        }
+
+        return nested;
+    }
+
+    /**
+     * Escapes a map key for use as a part of a key in special dot notation.
+     */
+    private static String escape(Object key)
+    {
+        final String name = String.valueOf(key)
+                .replace(".", UConfig.KEY_INDICES_ESCAPE + ".");
+
+        if (name.equals(UConfig.KEY_INDICES_DELIMITER)
+                || name.startsWith(UConfig.KEY_INDICES_ESCAPE)
+                || (! name.isEmpty() && UConfig.isPositiveInteger(name))) {
+            return UConfig.KEY_INDICES_ESCAPE + name;
+        }
+
+        return name;
+    }
+
+    private static String child(String path, String part)
+    {
+        return path.isEmpty() ? part : path + "." + part;
+    }
+
+    /**
+     * Compares two trees, hashing each of their maps and lists once.
+     */
+    private static final class Walk
+    {
+        private final boolean lenient;
+        private final Map<Object, Long> hashes = new IdentityHashMap<>();
+
+        Walk(boolean lenient)
+        {
+            this.lenient = lenient;
+        }
+
+        void diff(String path, Object a, Object b, ConfigDiff diff)
+        {
+            a = value(a);
+            b = value(b);
+
+            if (a == b) {
+                return;
+            }
+
+            if (a instanceof Map && b instanceof Map) {
+                if (hash(a) == hash(b)) {
+                    return;
+                }
+
+                final Map<?, ?> from = keyed(a);
+                final Map<?, ?> to = keyed(b);
+
+                // the text of an element that also has attributes or children
+                if (! scalarEquals(text(a), text(b))) {
+                    diff.changed.add(path);
+                }
+
+                for (Map.Entry<?, ?> e : from.entrySet()) {
+                    final String key = child(path, escape(e.getKey()));
+
+                    if (to.containsKey(e.getKey())) {
+                        diff(key, e.getValue(), to.get(e.getKey()), diff);
+                    }
+                    else {
+                        diff.removed.add(key);
+                    }
+                }
+
+                for (Object key : to.keySet()) {
+                    if (! from.containsKey(key)) {
+                        diff.added.add(child(path, escape(key)));
+                    }
+                }
+            }
+            else if (a instanceof List && b instanceof List) {
+                if (hash(a) == hash(b)) {
+                    return;
+                }
+
+                final List<?> from = (List<?>) a;
+                final List<?> to = (List<?>) b;
+                final int common = Math.min(from.size(), to.size());
+
+                for (int i = 0; i < common; i++) {
+                    diff(child(path, String.valueOf(i)), from.get(i),
+                            to.get(i), diff);
+                }
+
+                for (int i = common; i < from.size(); i++) {
+                    diff.removed.add(child(path, String.valueOf(i)));
+                }
+
+                for (int i = common; i < to.size(); i++) {
+                    diff.added.add(child(path, String.valueOf(i)));
+                }
+            }
+            else if (! scalarEquals(a, b)) {
+                diff.changed.add(path);
+            }
+        }
+
+        /**
+         * Gets a map to look up keys in. Across types, keys are looked up by
+         * their string form, as a key may be the number {@code 1} in one
+         * and the text {@code 1} in another.
+         */
+        private Map<?, ?> keyed(Object map)
+        {
+            if (! lenient) {
+                return (Map<?, ?>) map;
+            }
+
+            final Map<String, Object> keyed = new LinkedHashMap<>();
+
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) map).entrySet()) {
+                keyed.put(String.valueOf(e.getKey()), e.getValue());
+            }
+
+            return keyed;
+        }
+
+        /**
+         * Gets the value a node is read as. An XML element with nothing but
+         * text is its text, and a blank one is empty, as when read from a
+         * config.
+         */
+        private static Object value(Object node)
+        {
+            if (node instanceof XMLElement && ((XMLElement) node).isEmpty()) {
+                final Object text = ((XMLElement) node).getText();
+
+                return text != null ? text : "";
+            }
+
+            return node;
+        }
+
+        private static Object text(Object node)
+        {
+            return node instanceof XMLElement
+                    ? ((XMLElement) node).getText() : null;
+        }
+
+        private boolean scalarEquals(Object a, Object b)
+        {
+            if (a == null || b == null) {
+                return a == b;
+            }
+
+            return lenient ? a.toString().equals(b.toString()) : a.equals(b);
+        }
+
+        private long hash(Object node)
+        {
+            node = value(node);
+
+            if (! (node instanceof Map) && ! (node instanceof List)) {
+                return mix(scalarHash(node));
+            }
+
+            final Long cached = hashes.get(node);
+
+            if (cached != null) {
+                return cached;
+            }
+
+            long hash;
+
+            if (node instanceof Map) {
+                // summed, so that the order of keys does not matter
+                hash = 0x4D41500000000000L ^ scalarHash(text(node));
+
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) node).entrySet()) {
+                    final Object key = lenient
+                            ? String.valueOf(e.getKey()) : e.getKey();
+
+                    hash += mix(scalarHash(key) * 31
+                            + hash(e.getValue()));
+                }
+            }
+            else {
+                hash = 0x4C49535400000000L;
+
+                for (Object item : (List<?>) node) {
+                    hash = mix(hash * 31 + hash(item));
+                }
+            }
+
+            hash = mix(hash);
+            hashes.put(node, hash);
+
+            return hash;
+        }
+
+        private long scalarHash(Object scalar)
+        {
+            if (scalar == null) {
+                return 0;
+            }
+
+            final String str = scalar.toString();
+            long hash = str.length();
+
+            // 64 bits, as collisions of String#hashCode are easy to come by
+            for (int i = 0; i < str.length(); i++) {
+                hash = (hash ^ str.charAt(i)) * 0x100000001B3L;
+            }
+
+            // strictly, 5 and "5" differ
+            return lenient ? hash : hash ^ scalar.getClass().hashCode();
+        }
+
+        /**
+         * Spreads the bits of a hash, as the finalizer of SplitMix64 does.
+         */
+        private static long mix(long z)
+        {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+            return z ^ (z >>> 31);
+        }
+    }
+}
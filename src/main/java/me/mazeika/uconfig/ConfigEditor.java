@@ -0,0 +1,354 @@
+package me.mazeika.uconfig;
+
+import me.mazeika.uconfig.parsing.ParserType;
+import me.mazeika.uconfig.parsing.XMLElement;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Collects changes to a file-backed config, to be written back to its file
+ * all at once by {@link #commit()}. Obtained from {@link Config#edit()}.
+ * <p>
+ * Committing never changes the tree readers are looking at. Instead, only the
+ * maps and lists along the edited keys are copied, the changes are made to
+ * the copies, and the new tree replaces the old one once it has been written.
+ * Readers see either the old values or the new ones, never a mix, and do not
+ * wait for the commit.
+ * <p>
+ * The file is rewritten from the tree, so comments and formatting in it are
+ * not kept, and configs that resolve references or includes cannot be
+ * edited, as their values would be written in place of them. Instances are
+ * not thread-safe, and can be committed only once.
+ * <p>
+ * One use of this class may be as follows:
+ * <pre>
+ * config.edit()
+ *       .set("server.port", 8081)
+ *       .remove("server.debug")
+ *       .commit();
+ * </pre>
+ */
+public final class ConfigEditor
+{
+    private final UConfig config;
+    private final ParserType type;
+    private final List<Edit> edits = new ArrayList<>();
+    private boolean committed;
+
+    ConfigEditor(UConfig config, ParserType type)
+    {
+        this.config = config;
+        this.type = type;
+    }
+
+    /**
+     * Sets the value at the given {@code key}, in special dot notation.
+     * Missing maps along the key are created, as are lists where the next
+     * part of the key is an index. An index may be one past the end of a
+     * list, to append to it.
+     * <p>
+     * For XML, setting an element that has text replaces its text; other
+     * names set an attribute if one by that name exists, and a child element
+     * otherwise. Prefix the name with {@code '@'} to always set an attribute.
+     *
+     * @param key the key in special dot notation
+     * @param value the value; may be a {@link Map} or {@link List}
+     *
+     * @return this editor
+     *
+     * @throws IllegalArgumentException if the key or value is not valid for
+     *                                  the config's format
+     */
+    public ConfigEditor set(String key, Object value)
+    {
+        if (value == null) {
+            throw new IllegalArgumentException("Value for " + key
+                    + " cannot be null; use remove instead");
+        }
+
+        edits.add(new Edit(parse(key), value));
+
+        return this;
+    }
+
+    /**
+     * Removes the value at the given {@code key}, in special dot notation.
+     * Nothing is done if there is no value at the key.
+     *
+     * @param key the key in special dot notation
+     *
+     * @return this editor
+     *
+     * @throws IllegalArgumentException if the key is not valid for the
+     *                                  config's format
+     */
+    public ConfigEditor remove(String key)
+    {
+        edits.add(new Edit(parse(key), null));
+
+        return this;
+    }
+
+    /**
+     * Applies the changes to the config, validates them against its schema,
+     * if any, and atomically replaces its file with the new contents. If
+     * anything fails, neither the file nor the config is changed.
+     *
+     * @throws IllegalArgumentException if a change does not fit the tree,
+     *                                  such as an index past the end of a
+     *                                  list
+     * @throws SchemaException if the changed tree does not match the schema
+     * @throws UncheckedIOException if the file cannot be written
+     * @throws IllegalStateException if this editor was already committed
+     */
+    public void commit()
+    {
+        if (committed) {
+            throw new IllegalStateException("Already committed");
+        }
+
+        committed = true;
+        config.commit(this::apply);
+    }
+
+    private String[] parse(String key)
+    {
+        final String[] tokens = UConfig.parseKey(key);
+
+        if (type == ParserType.PROPERTIES && tokens.length > 1) {
+            throw new IllegalArgumentException("Properties keys cannot be "
+                    + "nested; escape the dots in " + key);
+        }
+
+        for (String token : tokens) {
+            if (token.isEmpty()) {
+                throw new IllegalArgumentException("Empty part in key " + key);
+            }
+        }
+
+        // escapes are kept, so that escaped numbers are not taken as indices
+        return tokens;
+    }
+
+    /**
+     * Applies the edits to a copy of the given tree, copying only the
+     * containers along the edited keys.
+     *
+     * @param root the current tree, which is not changed
+     *
+     * @return the edited tree
+     */
+    private Object apply(Object root)
+    {
+        final Set<Object> copies =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        final Object tree = copy(root, copies);
+
+        for (Edit edit : edits) {
+            Object node = tree;
+
+            for (int i = 0; i < edit.key.length - 1 && node != null; i++) {
+                Object child = get(node, edit.key[i]);
+
+                if (child == null && edit.value != null) {
+                    child = create(edit.key[i + 1]);
+                }
+                else if (child != null) {
+                    child = copy(child, copies);
+                }
+
+                if (child != null) {
+                    put(node, edit.key[i], child);
+                }
+
+                node = child;
+            }
+
+            final String last = edit.key[edit.key.length - 1];
+
+            if (edit.value != null) {
+                put(node, last, edit.value);
+            }
+            else if (node != null) {
+                remove(node, last);
+            }
+        }
+
+        return tree;
+    }
+
+    /**
+     * Copies the given container, unless it is already a copy. The children
+     * are shared.
+     */
+    private static Object copy(Object node, Set<Object> copies)
+    {
+        if (copies.contains(node)) {
+            return node;
+        }
+
+        final Object copy;
+
+        if (node instanceof Properties) {
+            copy = new Properties();
+            ((Properties) copy).putAll((Properties) node);
+        }
+        else if (node instanceof XMLElement) {
+            copy = ((XMLElement) node).copy();
+        }
+        else if (node instanceof Map) {
+            copy = new LinkedHashMap<>((Map<?, ?>) node);
+        }
+        else if (node instanceof List) {
+            copy = new ArrayList<>((List<?>) node);
+        }
+        else {
+            throw new IllegalArgumentException("Cannot set a value inside '"
+                    + node + "', as it is not a map or list");
+        }
+
+        copies.add(copy);
+
+        return copy;
+    }
+
+    /**
+     * Creates the container for a missing key part, which is a list if the
+     * next part is an index.
+     */
+    private Object create(String next)
+    {
+        if (UConfig.isPositiveInteger(next)) {
+            return new ArrayList<>();
+        }
+
+        return type == ParserType.XML ? new XMLElement()
+                : new LinkedHashMap<>();
+    }
+
+    private static Object get(Object node, String name)
+    {
+        if (node instanceof List) {
+            final List<?> list = (List<?>) node;
+            final int index = index(name);
+
+            return index < list.size() ? list.get(index) : null;
+        }
+
+        return ((Map<?, ?>) node).get(unescape(name));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void put(Object node, String name, Object value)
+    {
+        if (node instanceof List) {
+            final List<Object> list = (List<Object>) node;
+            final int index = index(name);
+
+            if (index < list.size()) {
+                list.set(index, value);
+            }
+            else if (index == list.size()) {
+                list.add(value);
+            }
+            else {
+                throw new IllegalArgumentException("Index " + index
+                        + " is past the end of a list of " + list.size());
+            }
+        }
+        else if (node instanceof XMLElement) {
+            put((XMLElement) node, unescape(name), value);
+        }
+        else {
+            ((Map<String, Object>) node).put(unescape(name), value);
+        }
+    }
+
+    private static void put(XMLElement element, String name, Object value)
+    {
+        final boolean scalar = ! (value instanceof Map)
+                && ! (value instanceof List);
+
+        if (name.startsWith(XMLElement.ATTRIBUTE_PREFIX)) {
+            if (! scalar) {
+                throw new IllegalArgumentException("Attribute " + name
+                        + " can only hold a value");
+            }
+
+            element.put(name, value);
+            return;
+        }
+
+        final Object child = element.getChildren().get(name);
+
+        if (scalar && child instanceof XMLElement) {
+            // keep the element's attributes and children; only its text is
+            // its value
+            final XMLElement copy = ((XMLElement) child).copy();
+
+            copy.setText(value);
+            element.setChild(name, copy);
+        }
+        else if (scalar && child == null
+                && element.getAttributes().containsKey(name)) {
+            element.put(name, value);
+        }
+        else {
+            element.setChild(name, value);
+        }
+    }
+
+    private static void remove(Object node, String name)
+    {
+        if (node instanceof List) {
+            final List<?> list = (List<?>) node;
+            final int index = index(name);
+
+            if (index < list.size()) {
+                list.remove(index);
+            }
+        }
+        else {
+            ((Map<?, ?>) node).remove(unescape(name));
+        }
+    }
+
+    private static String unescape(String name)
+    {
+        return name.startsWith(UConfig.KEY_INDICES_ESCAPE)
+                ? name.substring(1) : name;
+    }
+
+    private static int index(String name)
+    {
+        if (! UConfig.isPositiveInteger(name)) {
+            throw new IllegalArgumentException("'" + name
+                    + "' is not an index into a list");
+        }
+
+        return Integer.parseUnsignedInt(name);
+    }
+
+    /**
+     * A single set or, if the value is {@code null}, remove.
+     */
+    private static class Edit
+    {
+        private final String[] key;
+        private final Object value;
+
+        Edit(String[] key, Object value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
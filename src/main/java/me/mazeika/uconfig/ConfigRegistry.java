@@ -0,0 +1,364 @@
+package me.mazeika.uconfig;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Manages many lazily loaded configs by id, such as one per tenant, while
+ * bounding how many of their parsed trees are held in memory at once. When
+ * loading a config takes the registry over its budget, the trees of the least
+ * recently used configs are dropped. The configs themselves stay registered,
+ * and simply load again on their next read.
+ * <p>
+ * Recency is tracked with the CLOCK (second chance) approximation of LRU: a
+ * read only sets a flag on the config, and eviction skips, once, each config
+ * read since it was last looked at. Each config loads at most once at a time,
+ * however many threads read it concurrently.
+ * <p>
+ * The memory used by a tree is estimated from its contents when it loads. The
+ * estimate is meant for budgeting, not accounting, and is not exact.
+ */
+public final class ConfigRegistry
+{
+    private final ConfigBuilder builder;
+    private final int maxLoaded;
+    private final long maxBytes;
+    private final ConcurrentMap<String, UConfig> configs =
+            new ConcurrentHashMap<>();
+    private final AtomicLong loads = new AtomicLong();
+
+    /**
+     * The loaded trees, oldest first; the clock hand is at the head. Guarded
+     * by itself.
+     */
+    private final ArrayDeque<Entry> loaded = new ArrayDeque<>();
+    private long loadedBytes;
+
+    /**
+     * Creates a registry whose configs are created with the default options.
+     *
+     * @param maxLoaded the maximum number of trees to hold in memory
+     * @param maxBytes the maximum estimated bytes of trees to hold in memory
+     *
+     * @throws IllegalArgumentException if a budget is not positive
+     */
+    public ConfigRegistry(int maxLoaded, long maxBytes)
+    {
+        this(Config.builder(), maxLoaded, maxBytes);
+    }
+
+    /**
+     * Creates a registry whose configs are created with the options of the
+     * given {@code builder}. Its lazy loading and warming options are ignored,
+     * as registered configs are always lazily loaded.
+     *
+     * @param builder the builder to create configs with
+     * @param maxLoaded the maximum number of trees to hold in memory
+     * @param maxBytes the maximum estimated bytes of trees to hold in memory
+     *
+     * @throws IllegalArgumentException if a budget is not positive
+     */
+    public ConfigRegistry(ConfigBuilder builder, int maxLoaded, long maxBytes)
+    {
+        if (maxLoaded <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Budgets must be positive");
+        }
+
+        this.builder = builder;
+        this.maxLoaded = maxLoaded;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Registers a config for the given {@code file} under the given
+     * {@code id}. The file is not loaded until the config is first read. If a
+     * config is already registered under the id, it is returned instead.
+     *
+     * @param id the id to register the config under
+     * @param file the file to load and parse
+     *
+     * @return the config registered under the id
+     *
+     * @throws UnsupportedOperationException if the given file is not of a
+     *                                       supported type
+     */
+    public Config register(String id, File file)
+    {
+        return configs.computeIfAbsent(id, k -> {
+            final UConfig config = builder.createLazy(file);
+
+            config.track(new Tracker(id));
+
+            return config;
+        });
+    }
+
+    /**
+     * Gets the config registered under the given {@code id}.
+     *
+     * @param id the id
+     *
+     * @return an optional of the config; empty if none is registered
+     */
+    public Optional<Config> get(String id)
+    {
+        return Optional.ofNullable(configs.get(id));
+    }
+
+    /**
+     * Unregisters the config under the given {@code id}, releasing its tree.
+     * The config may still be read afterwards, but is no longer counted
+     * against the budget.
+     *
+     * @param id the id
+     *
+     * @return {@code true} if a config was registered under the id
+     */
+    public boolean unregister(String id)
+    {
+        final UConfig config = configs.remove(id);
+
+        if (config == null) {
+            return false;
+        }
+
+        Entry removed = null;
+
+        synchronized (loaded) {
+            for (Iterator<Entry> it = loaded.iterator(); it.hasNext(); ) {
+                final Entry entry = it.next();
+
+                if (entry.config == config) {
+                    it.remove();
+                    loadedBytes -= entry.bytes;
+                    removed = entry;
+                    break;
+                }
+            }
+        }
+
+        if (removed != null) {
+            config.unload(removed.data);
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the number of registered configs.
+     *
+     * @return the number of registered configs
+     */
+    public int size()
+    {
+        return configs.size();
+    }
+
+    /**
+     * Gets the number of trees currently held in memory.
+     *
+     * @return the number of loaded trees
+     */
+    public int loadedCount()
+    {
+        synchronized (loaded) {
+            return loaded.size();
+        }
+    }
+
+    /**
+     * Gets the estimated bytes of the trees currently held in memory.
+     *
+     * @return the estimated bytes
+     */
+    public long loadedBytes()
+    {
+        synchronized (loaded) {
+            return loadedBytes;
+        }
+    }
+
+    /**
+     * Gets the number of times registered configs were loaded, including
+     * reloads after eviction but not commits, whose trees take the place of
+     * the ones they replace. A high rate of reloads means the budget is too
+     * small for the working set.
+     *
+     * @return the total number of loads
+     */
+    public long loadCount()
+    {
+        return loads.get();
+    }
+
+    /**
+     * Records a freshly loaded tree and evicts trees until the registry is
+     * within its budget again. The fresh tree itself is never evicted.
+     */
+    private void loaded(String id, UConfig config, Object data)
+    {
+        loads.incrementAndGet();
+        record(id, config, data, false);
+    }
+
+    /**
+     * Records a tree that replaced the loaded one, such as by a commit. It
+     * takes the place of the replaced tree, if that is still held, rather
+     * than counting as another load.
+     */
+    private void replaced(String id, UConfig config, Object data)
+    {
+        record(id, config, data, true);
+    }
+
+    private void record(String id, UConfig config, Object data,
+                        boolean replacing)
+    {
+        final long bytes = maxBytes == Long.MAX_VALUE ? 0 : estimate(data);
+        final List<Entry> victims = new ArrayList<>();
+
+        synchronized (loaded) {
+            if (configs.get(id) != config) {
+                // unregistered while loading
+                return;
+            }
+
+            Entry fresh = replacing ? find(config) : null;
+
+            if (fresh != null) {
+                loadedBytes += bytes - fresh.bytes;
+                fresh.data = data;
+                fresh.bytes = bytes;
+            }
+            else {
+                fresh = new Entry(config, data, bytes);
+                loaded.addLast(fresh);
+                loadedBytes += fresh.bytes;
+                // the read that loaded the tree does not count as a use of
+                // it, or every entry would have its flag set
+                config.referenced = false;
+            }
+
+            // readers may keep setting flags, so give up on second chances
+            // after two full turns of the clock
+            int chances = 2 * loaded.size();
+
+            while (loaded.size() > 1 && (loaded.size() > maxLoaded
+                    || loadedBytes > maxBytes)) {
+                final Entry entry = loaded.pollFirst();
+
+                if (entry == fresh || (entry.config.referenced
+                        && chances-- > 0)) {
+                    // second chance
+                    entry.config.referenced = false;
+                    loaded.addLast(entry);
+                    continue;
+                }
+
+                loadedBytes -= entry.bytes;
+                victims.add(entry);
+            }
+        }
+
+        // unload outside of the registry's lock, as configs take their own
+        for (Entry victim : victims) {
+            victim.config.unload(victim.data);
+        }
+    }
+
+    /**
+     * Finds the entry of the given config. Must be called while holding the
+     * lock of {@link #loaded}.
+     */
+    private Entry find(UConfig config)
+    {
+        for (Entry entry : loaded) {
+            if (entry.config == config) {
+                return entry;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Roughly estimates the bytes retained by the given tree on a 64-bit JVM
+     * with compressed pointers.
+     */
+    static long estimate(Object node)
+    {
+        if (node instanceof Map) {
+            long bytes = 64;
+
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) node).entrySet()) {
+                bytes += 40 + estimate(e.getKey()) + estimate(e.getValue());
+            }
+
+            return bytes;
+        }
+
+        if (node instanceof List) {
+            long bytes = 40;
+
+            for (Object item : (List<?>) node) {
+                bytes += 4 + estimate(item);
+            }
+
+            return bytes;
+        }
+
+        if (node instanceof String) {
+            return 40 + ((String) node).length();
+        }
+
+        return node == null ? 0 : 16;
+    }
+
+    /**
+     * A loaded tree. Its tree is replaced when its config commits, while
+     * holding the lock of {@link #loaded}.
+     */
+    private static class Entry
+    {
+        private final UConfig config;
+        private Object data;
+        private long bytes;
+
+        Entry(UConfig config, Object data, long bytes)
+        {
+            this.config = config;
+            this.data = data;
+            this.bytes = bytes;
+        }
+    }
+
+    private class Tracker implements LoadTracker
+    {
+        private final String id;
+
+        Tracker(String id)
+        {
+            this.id = id;
+        }
+
+        @Override
+        public void loaded(UConfig config, Object data)
+        {
+            ConfigRegistry.this.loaded(id, config, data);
+        }
+
+        @Override
+        public void replaced(UConfig config, Object data)
+        {
+            ConfigRegistry.this.replaced(id, config, data);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package me.mazeika.uconfig;
+
+/**
+ * Thrown when a value is read with a default of a clearly different kind,
+ * such as reading a string with an {@link Integer} default. The kinds are
+ * string, number, boolean, map and list; defaults of other types are not
+ * checked, and neither is the exact class of a number, so a default such as
+ * {@code (Number) 0L} still reads an integer. It is a
+ * {@link ClassCastException}, as is thrown when such a value is assigned to
+ * a variable of the default's type, but names the key and both types.
+ * <p>
+ * Only the default's runtime type is known, so a default of a static type
+ * like {@code Object} is still checked by the kind of its value: reading a
+ * string with {@code (Object) 1} throws. Pass {@code null} to read a value
+ * of any kind.
+ */
+public class ConfigTypeException extends ClassCastException
+{
+    private static final long serialVersionUID = 1L;
+    private static final int MAX_VALUE_LENGTH = 40;
+
+    private final String key;
+    private final Class<?> expectedType;
+    private final Class<?> actualType;
+
+    public ConfigTypeException(String key, Class<?> expectedType,
+                               Object value)
+    {
+        super("Value at " + key + " is " + describe(value) + ", not "
+                + article(expectedType.getSimpleName()));
+        this.key = key;
+        this.expectedType = expectedType;
+        this.actualType = value.getClass();
+    }
+
+    /**
+     * Gets the key that was read.
+     *
+     * @return the key
+     */
+    public String getKey()
+    {
+        return key;
+    }
+
+    /**
+     * Gets the type the value was read as, which is the type of the default
+     * value.
+     *
+     * @return the expected type
+     */
+    public Class<?> getExpectedType()
+    {
+        return expectedType;
+    }
+
+    /**
+     * Gets the type the value actually has.
+     *
+     * @return the actual type
+     */
+    public Class<?> getActualType()
+    {
+        return actualType;
+    }
+
+    private static String describe(Object value)
+    {
+        String str = value.toString();
+
+        if (str.length() > MAX_VALUE_LENGTH) {
+            str = str.substring(0, MAX_VALUE_LENGTH) + "...";
+        }
+
+        return article(value.getClass().getSimpleName()) + " ('" + str + "')";
+    }
+
+    private static String article(String noun)
+    {
+        return ("AEIOU".indexOf(noun.charAt(0)) >= 0 ? "an " : "a ") + noun;
+    }
+}
@@ -0,0 +1,43 @@
+package me.mazeika.uconfig;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * A source backed by a file, which can also be written back to.
+ */
+class FileSource implements Source
+{
+    private final File file;
+
+    FileSource(File file)
+    {
+        this.file = file;
+    }
+
+    @Override
+    public InputStream open() throws IOException
+    {
+        return new FileInputStream(file);
+    }
+
+    File getFile()
+    {
+        return file;
+    }
+
+    @Override
+    public Path directory()
+    {
+        return file.getAbsoluteFile().toPath().getParent();
+    }
+
+    @Override
+    public String describe()
+    {
+        return file.getPath();
+    }
+}
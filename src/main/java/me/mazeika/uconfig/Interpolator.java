@@ -0,0 +1,282 @@
+package me.mazeika.uconfig;
+
+import me.mazeika.uconfig.parsing.ParserType;
+import me.mazeika.uconfig.parsing.XMLElement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Resolves {@code ${name}} references in the string values of a freshly
+ * parsed tree, replacing them in place, so that reads of the stored tree cost
+ * the same as for a config without references.
+ * <p>
+ * A name is looked up, in order, as a key of the config itself (in special
+ * dot notation, or as the whole key for properties files), as a system
+ * property, and as an environment variable. {@code ${name:-fallback}} gives a
+ * fallback for when the name is not found anywhere, which may itself hold
+ * references, as in {@code ${name:-${other}}}, and <code>$${</code> is left
+ * as a literal <code>${</code>. References to other keys may themselves
+ * contain references; each key is resolved only once, from its value as it
+ * was parsed, so the order of keys does not matter.
+ */
+class Interpolator
+{
+    private static final String START = "${";
+    private static final String ESCAPED_START = "$${";
+    private static final String END = "}";
+    private static final String FALLBACK = ":-";
+
+    private final Object root;
+    private final ParserType type;
+    private final Config lookup;
+    private final Function<String, String> env;
+    private final Map<String, String> resolved = new HashMap<>();
+    private final Set<String> resolving = new LinkedHashSet<>();
+
+    /**
+     * Creates an interpolator for the given tree.
+     *
+     * @param root the root of the tree
+     * @param type the type the tree was parsed from
+     * @param env looks up environment variables
+     */
+    Interpolator(Object root, ParserType type, Function<String, String> env)
+    {
+        this.root = root;
+        this.type = type;
+        this.env = env;
+        lookup = UConfig.view(root, type);
+    }
+
+    /**
+     * Resolves every reference in the tree.
+     *
+     * @return the root of the tree
+     *
+     * @throws ParseException if a reference cannot be resolved or is cyclic
+     */
+    Object interpolate()
+    {
+        // references are looked up in the tree, so it is only changed once
+        // every value has been resolved from the one that was parsed
+        final List<Runnable> writes = new ArrayList<>();
+
+        walk(root, writes);
+
+        for (Runnable write : writes) {
+            write.run();
+        }
+
+        return root;
+    }
+
+    private void walk(Object node, List<Runnable> writes)
+    {
+        if (node instanceof XMLElement) {
+            final XMLElement element = (XMLElement) node;
+
+            if (element.getText() instanceof String) {
+                final String text = (String) element.getText();
+                final String interpolated = interpolate(text);
+
+                // noinspection StringEquality
+                if (interpolated != text) {
+                    writes.add(() -> element.setText(interpolated));
+                }
+            }
+        }
+
+        if (node instanceof Map) {
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) node).entrySet()) {
+                visit(node, e.getKey(), e.getValue(), writes);
+            }
+        }
+        else if (node instanceof List) {
+            final List<?> list = (List<?>) node;
+
+            for (int i = 0; i < list.size(); i++) {
+                visit(node, i, list.get(i), writes);
+            }
+        }
+    }
+
+    private void visit(Object parent, Object key, Object value,
+                       List<Runnable> writes)
+    {
+        if (value instanceof String) {
+            final String interpolated = interpolate((String) value);
+
+            // noinspection StringEquality
+            if (interpolated != value) {
+                writes.add(() -> set(parent, key, interpolated));
+            }
+        }
+        else {
+            walk(value, writes);
+        }
+    }
+
+    /**
+     * Replaces the value at the given key or index of the given map or list.
+     */
+    @SuppressWarnings("unchecked")
+    private static void set(Object parent, Object key, Object value)
+    {
+        if (parent instanceof Map) {
+            ((Map<Object, Object>) parent).put(key, value);
+        }
+        else {
+            ((List<Object>) parent).set((Integer) key, value);
+        }
+    }
+
+    /**
+     * Resolves the references in the given string.
+     *
+     * @return the resolved string; the same instance if it has no references
+     */
+    private String interpolate(String str)
+    {
+        int start = str.indexOf(START);
+
+        if (start < 0) {
+            return str;
+        }
+
+        final StringBuilder builder = new StringBuilder(str.length());
+        int from = 0;
+
+        while (start >= 0) {
+            if (start > 0 && str.startsWith(ESCAPED_START, start - 1)) {
+                builder.append(str, from, start - 1).append(START);
+                from = start + START.length();
+            }
+            else {
+                final int end = endOf(str, start);
+
+                if (end < 0) {
+                    throw new ParseException("Unterminated reference in '"
+                            + str + "'");
+                }
+
+                builder.append(str, from, start).append(resolve(
+                        str.substring(start + START.length(), end)));
+                from = end + END.length();
+            }
+
+            start = str.indexOf(START, from);
+        }
+
+        return builder.append(str, from, str.length()).toString();
+    }
+
+    /**
+     * Gets the index of the brace closing the reference starting at the given
+     * index, skipping over the references nested in its fallback.
+     *
+     * @return the index, or {@code -1} if the reference is not closed
+     */
+    private static int endOf(String str, int start)
+    {
+        int depth = 0;
+
+        for (int i = start; i < str.length(); i++) {
+            if (str.startsWith(START, i)) {
+                depth++;
+                i += START.length() - 1;
+            }
+            else if (str.startsWith(END, i) && --depth == 0) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Resolves the body of a single reference.
+     */
+    private String resolve(String reference)
+    {
+        final int fallbackIndex = reference.indexOf(FALLBACK);
+        final String name = fallbackIndex < 0 ? reference
+                : reference.substring(0, fallbackIndex);
+
+        if (name.contains(START)) {
+            throw new ParseException("Reference ${" + reference
+                    + "} has a reference in its name");
+        }
+
+        String value = resolved.get(name);
+
+        if (value == null) {
+            value = lookup(name);
+
+            if (value != null) {
+                resolved.put(name, value);
+            }
+        }
+
+        if (value != null) {
+            return value;
+        }
+
+        if (fallbackIndex >= 0) {
+            return interpolate(
+                    reference.substring(fallbackIndex + FALLBACK.length()));
+        }
+
+        throw new ParseException("Unresolved reference ${" + reference + "}");
+    }
+
+    private String lookup(String name)
+    {
+        if (name.isEmpty()) {
+            throw new ParseException("Empty reference ${}");
+        }
+
+        Object value = null;
+
+        if (type == ParserType.PROPERTIES) {
+            value = ((Map<?, ?>) root).get(name);
+        }
+
+        if (value == null) {
+            try {
+                value = lookup.getOrDefault(name, null);
+            }
+            catch (IllegalArgumentException e) {
+                // not a valid key, so not a reference to one
+            }
+        }
+
+        if (value instanceof Map || value instanceof List) {
+            throw new ParseException("Reference ${" + name
+                    + "} is to a map or list, not a value");
+        }
+
+        if (value != null) {
+            if (! resolving.add(name)) {
+                throw new ParseException("Cyclic reference: "
+                        + String.join(" -> ", resolving) + " -> " + name);
+            }
+
+            try {
+                return interpolate(value.toString());
+            }
+            finally {
+                resolving.remove(name);
+            }
+        }
+
+        final String property = System.getProperty(name);
+
+        return property != null ? property : env.apply(name);
+    }
+}
@@ -0,0 +1,180 @@
+package me.mazeika.uconfig;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A key in special dot notation, parsed into its parts. Parsed keys are
+ * cached by their text, so that reading the same key again allocates
+ * nothing: a part's map key is ready to use, and whether it is a list index
+ * is already known. Indices given with a read are looked up by position
+ * rather than substituted into the key.
+ */
+final class KeyPath
+{
+    /**
+     * Marks a part that is a map key rather than a list index.
+     */
+    private static final int NOT_INDEX = -1;
+
+    /**
+     * Marks the part standing for the first given index; the part standing
+     * for the {@code n}th is marked {@code FIRST_PLACEHOLDER - n}.
+     */
+    private static final int FIRST_PLACEHOLDER = -2;
+
+    /**
+     * Keys built at runtime, such as from user input, could otherwise grow
+     * the cache without bound. Keys beyond this many are parsed every time.
+     */
+    private static final int MAX_CACHED = 4096;
+
+    private static final ConcurrentMap<String, KeyPath> cache =
+            new ConcurrentHashMap<>();
+
+    private final String key;
+    private final String[] names;
+    private final int[] indices;
+    private final int placeholders;
+
+    private KeyPath(String key)
+    {
+        final String[] tokens = UConfig.parseKey(key);
+        int placeholders = 0;
+
+        this.key = key.trim();
+        names = new String[tokens.length];
+        indices = new int[tokens.length];
+
+        for (int i = 0; i < tokens.length; i++) {
+            final String token = tokens[i];
+
+            if (token.equals(UConfig.KEY_INDICES_DELIMITER)) {
+                names[i] = token;
+                indices[i] = FIRST_PLACEHOLDER - placeholders++;
+            }
+            else if (UConfig.isPositiveInteger(token)) {
+                names[i] = token;
+                indices[i] = parseIndex(token);
+            }
+            else {
+                names[i] = token.startsWith(UConfig.KEY_INDICES_ESCAPE)
+                        ? token.substring(1) : token;
+                indices[i] = NOT_INDEX;
+            }
+        }
+
+        this.placeholders = placeholders;
+    }
+
+    /**
+     * Gets the parsed form of the given key.
+     *
+     * @param key the key in special dot notation
+     *
+     * @return the parsed key
+     */
+    static KeyPath of(String key)
+    {
+        KeyPath path = cache.get(key);
+
+        if (path == null) {
+            path = new KeyPath(key);
+
+            if (cache.size() < MAX_CACHED) {
+                cache.putIfAbsent(key, path);
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * Gets the number of parts.
+     *
+     * @return the number of parts
+     */
+    int size()
+    {
+        return names.length;
+    }
+
+    /**
+     * Checks that enough indices are given for the key's {@code '#'}s.
+     * Without any indices, {@code '#'}s are taken literally.
+     *
+     * @param given the indices given with the read
+     *
+     * @throws IllegalArgumentException if too few indices are given
+     */
+    void check(int[] given)
+    {
+        if (given.length > 0 && given.length < placeholders) {
+            throw new IllegalArgumentException(
+                    "Insufficient indices supplied for key " + key
+                            + ", received " + given.length + ": "
+                            + Arrays.toString(given));
+        }
+    }
+
+    /**
+     * Gets the list index the given part stands for.
+     *
+     * @param part the part
+     * @param given the indices given with the read
+     *
+     * @return the index, or a negative number if the part is a map key
+     */
+    int index(int part, int[] given)
+    {
+        final int index = indices[part];
+
+        if (index >= 0 || index == NOT_INDEX || given.length == 0) {
+            return index;
+        }
+
+        return given[FIRST_PLACEHOLDER - index];
+    }
+
+    /**
+     * Gets the map key the given part stands for, without escapes.
+     *
+     * @param part the part
+     * @param given the indices given with the read
+     *
+     * @return the map key
+     */
+    String name(int part, int[] given)
+    {
+        if (indices[part] <= FIRST_PLACEHOLDER && given.length > 0) {
+            // a negative index is taken as a map key
+            return String.valueOf(given[FIRST_PLACEHOLDER - indices[part]]);
+        }
+
+        return names[part];
+    }
+
+    /**
+     * Parses a string of digits, saturating at {@link Integer#MAX_VALUE},
+     * which is never a valid index.
+     */
+    private static int parseIndex(String digits)
+    {
+        if (digits.isEmpty()) {
+            return Integer.MAX_VALUE;
+        }
+
+        long value = 0;
+
+        for (int i = 0; i < digits.length(); i++) {
+            value = value * 10 + (digits.charAt(i) - '0');
+
+            if (value >= Integer.MAX_VALUE) {
+                return Integer.MAX_VALUE;
+            }
+        }
+
+        return (int) value;
+    }
+}
@@ -0,0 +1,124 @@
+package me.mazeika.uconfig;
+
+import me.mazeika.uconfig.parsing.Includes;
+import me.mazeika.uconfig.parsing.Parser;
+import me.mazeika.uconfig.parsing.ParserType;
+
+/**
+ * The options a config is loaded with, as set on a {@link ConfigBuilder}.
+ * Instances are immutable.
+ */
+class LoadOptions
+{
+    static final LoadOptions DEFAULT = new LoadOptions(null, false, false,
+            false, null, false);
+
+    private final Schema schema;
+    private final boolean interning;
+    private final boolean interpolating;
+    private final boolean locating;
+    private final Includes includes;
+    private final boolean parallel;
+
+    LoadOptions(Schema schema, boolean interning, boolean interpolating,
+                boolean locating, Includes includes, boolean parallel)
+    {
+        this.schema = schema;
+        this.interning = interning;
+        this.interpolating = interpolating;
+        this.locating = locating;
+        this.includes = includes;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Sets up the given parser as these options call for.
+     *
+     * @param parser the parser to set up
+     * @param source the source the parser will read
+     *
+     * @return the parser
+     */
+    Parser configure(Parser parser, Source source)
+    {
+        parser.setInterning(interning);
+        parser.setParallel(parallel);
+
+        if (includes != null) {
+            parser.setIncludes(includes, source.directory());
+        }
+
+        return parser;
+    }
+
+    /**
+     * Gets whether references are resolved when loading.
+     *
+     * @return {@code true} if references are resolved
+     */
+    boolean isInterpolating()
+    {
+        return interpolating;
+    }
+
+    /**
+     * Gets whether include directives are resolved when loading.
+     *
+     * @return {@code true} if includes are resolved
+     */
+    boolean isIncluding()
+    {
+        return includes != null;
+    }
+
+    /**
+     * Gets whether the location of each node is recorded when loading.
+     *
+     * @return {@code true} if locations are recorded
+     */
+    boolean isLocating()
+    {
+        return locating;
+    }
+
+    /**
+     * Checks an edited tree against the schema, if any, converting its values
+     * as when loading. References are not resolved.
+     *
+     * @param tree the edited tree
+     * @param type the type the tree was parsed from
+     *
+     * @return the tree to store
+     *
+     * @throws SchemaException if the tree does not match the schema
+     */
+    Object validate(Object tree, ParserType type)
+    {
+        return schema != null ? schema.apply(tree, type) : tree;
+    }
+
+    /**
+     * Runs the passes these options call for over a freshly parsed tree.
+     *
+     * @param tree the parsed tree
+     * @param type the type the tree was parsed from
+     *
+     * @return the tree to store
+     *
+     * @throws ParseException if a reference in the tree cannot be resolved
+     * @throws SchemaException if the tree does not match the schema
+     */
+    Object process(Object tree, ParserType type)
+    {
+        // before validating, so that resolved references are converted too
+        if (interpolating) {
+            tree = new Interpolator(tree, type, System::getenv).interpolate();
+        }
+
+        if (schema != null) {
+            tree = schema.apply(tree, type);
+        }
+
+        return tree;
+    }
+}
@@ -0,0 +1,26 @@
+package me.mazeika.uconfig;
+
+/**
+ * Notified whenever a config loads or replaces its tree.
+ */
+interface LoadTracker
+{
+    /**
+     * Called after the given config loaded the given tree, outside of any
+     * lock held by the config.
+     *
+     * @param config the config that was loaded
+     * @param data the loaded tree
+     */
+    void loaded(UConfig config, Object data);
+
+    /**
+     * Called after the given config replaced its tree with the given one
+     * without loading it, such as by a commit, outside of any lock held by
+     * the config.
+     *
+     * @param config the config whose tree was replaced
+     * @param data the new tree
+     */
+    void replaced(UConfig config, Object data);
+}
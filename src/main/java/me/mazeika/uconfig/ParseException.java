@@ -2,23 +2,68 @@ package me.mazeika.uconfig;
 
 public class ParseException extends RuntimeException
 {
+    private final int line;
+    private final int column;
+
     public ParseException()
     {
         super();
+        line = column = -1;
     }
 
     public ParseException(String message)
     {
         super(message);
+        line = column = -1;
     }
 
     public ParseException(String message, Throwable cause)
     {
         super(message, cause);
+        line = column = -1;
     }
 
     public ParseException(Throwable cause)
     {
         super(cause);
+        line = column = -1;
+    }
+
+    /**
+     * Creates an exception for an error at a known place in the input. The
+     * place is appended to the message.
+     *
+     * @param message the message
+     * @param line the line of the error, starting at 1
+     * @param column the column of the error, starting at 1
+     * @param cause the cause, if any
+     */
+    public ParseException(String message, int line, int column,
+                          Throwable cause)
+    {
+        super(message + " (line " + line + ", column " + column + ")",
+                cause);
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Gets the line of the input the error was found on, if known.
+     *
+     * @return the line, starting at 1, or {@code -1} if not known
+     */
+    public int getLine()
+    {
+        return line;
+    }
+
+    /**
+     * Gets the column of the input the error was found at, if known.
+     *
+     * @return the column, starting at 1, or {@code -1} if not known
+     */
+    public int getColumn()
+    {
+        return column;
     }
 }
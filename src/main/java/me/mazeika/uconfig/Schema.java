@@ -0,0 +1,686 @@
+package me.mazeika.uconfig;
+
+import me.mazeika.uconfig.parsing.Parser;
+import me.mazeika.uconfig.parsing.ParserType;
+import me.mazeika.uconfig.parsing.XMLElement;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Describes the expected shape and value types of a config. When attached to
+ * a config through {@link ConfigBuilder#schema(Schema)}, the whole tree is
+ * validated once when it is loaded, and every declared value is converted to
+ * its declared type in place. Reads then return values of the declared types
+ * directly, and a config that does not match fails with a
+ * {@link SchemaException} as soon as it is loaded.
+ * <p>
+ * Supported value types are {@link String}, {@link Integer}, {@link Long},
+ * {@link Double}, {@link Boolean}, {@link Duration} and any enum. Strings, as
+ * given by properties files, are converted to any of them. Durations may be
+ * given as ISO-8601 strings (e.g. {@code "PT30S"}), as a number and unit
+ * ({@code ms}, {@code s}, {@code m}, {@code h} or {@code d}, e.g.
+ * {@code "30s"}), or as a number of milliseconds. Enum constants are matched
+ * by name, ignoring case.
+ * <p>
+ * Schemas are declared in code through {@link #builder()}, using the same
+ * special dot notation as {@link Config#getOrDefault(String, Object)}, where
+ * a {@code '#'} stands for every element of a list:
+ *
+ * <pre><code>
+ * Schema.builder()
+ *       .require("server.port", Integer.class)
+ *       .optional("server.timeout", Duration.class)
+ *       .require("routes.#.host", String.class)
+ *       .build();
+ * </code></pre>
+ *
+ * or loaded from a JSON-schema-like file through {@link #load(File)}:
+ *
+ * <pre><code>
+ * {
+ *   "type": "object",
+ *   "required": ["server"],
+ *   "properties": {
+ *     "server": {
+ *       "type": "object",
+ *       "required": ["port"],
+ *       "properties": {
+ *         "port": { "type": "integer" },
+ *         "timeout": { "type": "duration" },
+ *         "mode": { "type": "string", "enum": ["fast", "safe"] }
+ *       }
+ *     },
+ *     "routes": {
+ *       "type": "array",
+ *       "items": { "type": "object", "properties": { "host": {} } }
+ *     }
+ *   }
+ * }
+ * </code></pre>
+ *
+ * Types in a schema file are one of {@code object}, {@code array},
+ * {@code string} (the default), {@code integer}, {@code long},
+ * {@code number}, {@code boolean} or {@code duration}. Keys not described by
+ * a schema are left untouched.
+ */
+public final class Schema
+{
+    private static final Pattern DURATION_PATTERN =
+            Pattern.compile("(-?\\d+)\\s*(ms|s|m|h|d)");
+
+    private final ObjectNode root;
+
+    private Schema(ObjectNode root)
+    {
+        this.root = root;
+    }
+
+    /**
+     * Creates a builder to declare a schema in code.
+     *
+     * @return a new builder
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Loads a schema from the given JSON-schema-like {@code file}, which may
+     * be of any type supported by {@link Config#create(File, boolean)}.
+     *
+     * @param file the schema file
+     *
+     * @return the loaded schema
+     *
+     * @throws ParseException if the file cannot be read or is not a valid
+     *                        schema
+     */
+    public static Schema load(File file)
+    {
+        final Parser parser = Parser.create(file.getName());
+
+        try (InputStream in = new BufferedInputStream(
+                new FileInputStream(file))) {
+            return fromTree(parser.parse(in));
+        }
+        catch (IOException e) {
+            throw new ParseException(e);
+        }
+    }
+
+    /**
+     * Loads a schema from the given JSON-schema-like stream, parsed as the
+     * given {@code type}. The stream is read fully, but not closed.
+     *
+     * @param in the stream to read the schema from
+     * @param type the type of the stream's contents
+     *
+     * @return the loaded schema
+     *
+     * @throws ParseException if the stream cannot be read or is not a valid
+     *                        schema
+     */
+    public static Schema load(InputStream in, ParserType type)
+    {
+        try {
+            return fromTree(Parser.create(type).parse(in));
+        }
+        catch (IOException e) {
+            throw new ParseException(e);
+        }
+    }
+
+    private static Schema fromTree(Object tree)
+    {
+        final Node root = toNode(tree, "");
+
+        if (! (root instanceof ObjectNode)) {
+            throw new ParseException("Invalid schema: root must be an object");
+        }
+
+        return new Schema((ObjectNode) root);
+    }
+
+    /**
+     * Converts a parsed schema file entry into a node.
+     */
+    private static Node toNode(Object tree, String path)
+    {
+        if (! (tree instanceof Map)) {
+            throw new ParseException("Invalid schema at '" + path
+                    + "': expected an object");
+        }
+
+        final Map<?, ?> map = (Map<?, ?>) tree;
+        final Object properties = map.get("properties");
+        final Object declaredType = map.get("type");
+        final String type = declaredType != null ? declaredType.toString()
+                : properties != null ? "object" : "string";
+
+        switch (type) {
+            case "object": {
+                final ObjectNode node = new ObjectNode();
+
+                if (properties instanceof Map) {
+                    for (Map.Entry<?, ?> e : ((Map<?, ?>) properties)
+                            .entrySet()) {
+                        final String name = e.getKey().toString();
+
+                        node.children.put(name, toNode(e.getValue(),
+                                path.isEmpty() ? name : path + "." + name));
+                    }
+                }
+
+                if (map.get("required") instanceof Collection) {
+                    for (Object name : (Collection<?>) map.get("required")) {
+                        node.required.add(name.toString());
+                    }
+                }
+
+                return node;
+            }
+            case "array": {
+                final Object items = map.get("items");
+
+                return new ArrayNode(items == null ? null
+                        : toNode(items, path + ".#"));
+            }
+            default: {
+                final Class<?> leafType = typeOf(type);
+
+                if (leafType == null) {
+                    throw new ParseException("Invalid schema at '" + path
+                            + "': unknown type " + type);
+                }
+
+                final LeafNode node = new LeafNode(leafType);
+
+                if (map.get("enum") instanceof Collection) {
+                    node.allowed = new HashSet<>();
+
+                    for (Object value : (Collection<?>) map.get("enum")) {
+                        node.allowed.add(String.valueOf(value));
+                    }
+                }
+
+                return node;
+            }
+        }
+    }
+
+    private static Class<?> typeOf(String name)
+    {
+        switch (name) {
+            case "string":
+                return String.class;
+            case "integer":
+                return Integer.class;
+            case "long":
+                return Long.class;
+            case "number":
+                return Double.class;
+            case "boolean":
+                return Boolean.class;
+            case "duration":
+                return Duration.class;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Validates the given tree against this schema, converting declared
+     * values to their declared types in place.
+     *
+     * @param tree the parsed tree
+     * @param type the type the tree was parsed from
+     *
+     * @return the tree
+     *
+     * @throws SchemaException if the tree does not match this schema
+     */
+    Object apply(Object tree, ParserType type)
+    {
+        final List<String> errors = new ArrayList<>();
+        final Object result = root.apply(tree, "", type, errors);
+
+        if (! errors.isEmpty()) {
+            throw new SchemaException(errors);
+        }
+
+        return result;
+    }
+
+    /**
+     * Converts the given scalar to the given type.
+     *
+     * @throws IllegalArgumentException if it cannot be converted
+     */
+    private static Object convert(Object value, Class<?> type)
+    {
+        if (type.isInstance(value)) {
+            return value;
+        }
+
+        final String str = value.toString().trim();
+
+        if (type == String.class) {
+            return value.toString();
+        }
+
+        if (type == Integer.class) {
+            if (value instanceof Number && isIntegral((Number) value)) {
+                return Math.toIntExact(((Number) value).longValue());
+            }
+
+            return Integer.parseInt(str);
+        }
+
+        if (type == Long.class) {
+            if (value instanceof Number && isIntegral((Number) value)) {
+                return ((Number) value).longValue();
+            }
+
+            return Long.parseLong(str);
+        }
+
+        if (type == Double.class) {
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+
+            return Double.parseDouble(str);
+        }
+
+        if (type == Boolean.class) {
+            if (str.equalsIgnoreCase("true")) {
+                return Boolean.TRUE;
+            }
+
+            if (str.equalsIgnoreCase("false")) {
+                return Boolean.FALSE;
+            }
+
+            throw new IllegalArgumentException();
+        }
+
+        if (type == Duration.class) {
+            if (value instanceof Number && isIntegral((Number) value)) {
+                return Duration.ofMillis(((Number) value).longValue());
+            }
+
+            return parseDuration(str);
+        }
+
+        if (type.isEnum()) {
+            for (Object constant : type.getEnumConstants()) {
+                if (((Enum<?>) constant).name().equalsIgnoreCase(str)) {
+                    return constant;
+                }
+            }
+        }
+
+        throw new IllegalArgumentException();
+    }
+
+    private static boolean isIntegral(Number n)
+    {
+        return n instanceof Integer || n instanceof Long
+                || n instanceof Short || n instanceof Byte;
+    }
+
+    private static Duration parseDuration(String str)
+    {
+        if (str.startsWith("P") || str.startsWith("-P")) {
+            return Duration.parse(str);
+        }
+
+        final Matcher m = DURATION_PATTERN.matcher(
+                str.toLowerCase(Locale.ROOT));
+
+        if (! m.matches()) {
+            throw new IllegalArgumentException();
+        }
+
+        final long amount = Long.parseLong(m.group(1));
+
+        switch (m.group(2)) {
+            case "ms":
+                return Duration.ofMillis(amount);
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            default:
+                return Duration.ofDays(amount);
+        }
+    }
+
+    private static String join(String path, String name)
+    {
+        return path.isEmpty() ? name : path + "." + name;
+    }
+
+    private static String describe(Class<?> type)
+    {
+        return type.getSimpleName().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A node in a schema, describing the value at some key.
+     */
+    private static abstract class Node
+    {
+        /**
+         * Validates and converts the given non-{@code null} value, adding any
+         * mismatches to {@code errors}.
+         *
+         * @return the converted value
+         */
+        abstract Object apply(Object value, String path, ParserType type,
+                              List<String> errors);
+    }
+
+    private static class ObjectNode extends Node
+    {
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private final Set<String> required = new HashSet<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object apply(Object value, String path, ParserType type,
+                     List<String> errors)
+        {
+            if (! (value instanceof Map)) {
+                errors.add(path + ": expected an object");
+                return value;
+            }
+
+            final Map<Object, Object> map = (Map<Object, Object>) value;
+
+            for (Map.Entry<String, Node> e : children.entrySet()) {
+                final String name = e.getKey();
+                final String childPath = join(path, name);
+                final Object child = map.get(name);
+
+                if (child == null) {
+                    if (required.contains(name)) {
+                        errors.add(childPath + ": missing");
+                    }
+
+                    continue;
+                }
+
+                final Object converted = e.getValue().apply(child, childPath,
+                        type, errors);
+
+                if (converted != child) {
+                    map.put(name, converted);
+                }
+            }
+
+            return value;
+        }
+    }
+
+    private static class ArrayNode extends Node
+    {
+        private Node items;
+
+        ArrayNode(Node items)
+        {
+            this.items = items;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object apply(Object value, String path, ParserType type,
+                     List<String> errors)
+        {
+            if (! (value instanceof List)) {
+                // a lone XML element is not wrapped in a list
+                if (type == ParserType.XML && items != null) {
+                    return items.apply(value, path, type, errors);
+                }
+
+                errors.add(path + ": expected a list");
+                return value;
+            }
+
+            if (items == null) {
+                return value;
+            }
+
+            final List<Object> list = (List<Object>) value;
+
+            for (int i = 0; i < list.size(); i++) {
+                final Object item = list.get(i);
+
+                if (item == null) {
+                    continue;
+                }
+
+                final Object converted = items.apply(item, path + "." + i,
+                        type, errors);
+
+                if (converted != item) {
+                    list.set(i, converted);
+                }
+            }
+
+            return value;
+        }
+    }
+
+    private static class LeafNode extends Node
+    {
+        private final Class<?> type;
+        private Set<String> allowed;
+
+        LeafNode(Class<?> type)
+        {
+            this.type = type;
+        }
+
+        @Override
+        Object apply(Object value, String path, ParserType parserType,
+                     List<String> errors)
+        {
+            if (value instanceof XMLElement) {
+                final XMLElement element = (XMLElement) value;
+
+                if (element.getText() != null) {
+                    element.setText(apply(element.getText(), path,
+                            parserType, errors));
+                    return value;
+                }
+
+                if (element.isBlank()) {
+                    return apply("", path, parserType, errors);
+                }
+            }
+
+            if (value instanceof Map || value instanceof List) {
+                errors.add(path + ": expected " + describe(type)
+                        + ", found " + (value instanceof Map
+                        ? "an object" : "a list"));
+                return value;
+            }
+
+            final Object converted;
+
+            try {
+                converted = convert(value, type);
+            }
+            catch (RuntimeException e) {
+                errors.add(path + ": expected " + describe(type)
+                        + ", found '" + value + "'");
+                return value;
+            }
+
+            if (allowed != null && ! allowed.contains(converted.toString())) {
+                errors.add(path + ": '" + converted + "' is not one of "
+                        + allowed);
+            }
+
+            return converted;
+        }
+    }
+
+    /**
+     * Declares a schema in code. Keys use the special dot notation described
+     * in {@link Config#getOrDefault(String, Object)}, with a {@code '#'}
+     * standing for every element of a list.
+     */
+    public static final class Builder
+    {
+        private final ObjectNode root = new ObjectNode();
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Declares that a value of the given type must exist at the given
+         * key. Every object along the key must exist as well.
+         *
+         * @param key the key in special dot notation
+         * @param type the type of the value
+         *
+         * @return this builder
+         *
+         * @throws IllegalArgumentException if the type is not supported, or
+         *                                  the key conflicts with an earlier
+         *                                  declaration
+         */
+        public Builder require(String key, Class<?> type)
+        {
+            return declare(key, type, true);
+        }
+
+        /**
+         * Declares that a value at the given key, if it exists, must be of the
+         * given type.
+         *
+         * @param key the key in special dot notation
+         * @param type the type of the value
+         *
+         * @return this builder
+         *
+         * @throws IllegalArgumentException if the type is not supported, or
+         *                                  the key conflicts with an earlier
+         *                                  declaration
+         */
+        public Builder optional(String key, Class<?> type)
+        {
+            return declare(key, type, false);
+        }
+
+        /**
+         * Builds the schema. The builder must not be used afterwards.
+         *
+         * @return the schema
+         */
+        public Schema build()
+        {
+            return new Schema(root);
+        }
+
+        private Builder declare(String key, Class<?> type, boolean required)
+        {
+            if (type != String.class && type != Integer.class
+                    && type != Long.class && type != Double.class
+                    && type != Boolean.class && type != Duration.class
+                    && ! type.isEnum()) {
+                throw new IllegalArgumentException(
+                        type.getName() + " values are not supported");
+            }
+
+            final String[] tokens = UConfig.parseKey(key);
+            Node node = root;
+
+            for (int i = 0; i < tokens.length; i++) {
+                final boolean last = i == tokens.length - 1;
+                final String token = tokens[i];
+
+                if (token.equals("#")) {
+                    if (! (node instanceof ArrayNode)) {
+                        throw conflict(key);
+                    }
+
+                    final ArrayNode array = (ArrayNode) node;
+
+                    array.items = child(array.items, last, tokens, i, type,
+                            key);
+                    node = array.items;
+                    continue;
+                }
+
+                if (! (node instanceof ObjectNode)) {
+                    throw conflict(key);
+                }
+
+                final ObjectNode object = (ObjectNode) node;
+                final String name = token.startsWith("\\")
+                        ? token.substring(1) : token;
+
+                object.children.put(name, child(object.children.get(name),
+                        last, tokens, i, type, key));
+
+                if (required) {
+                    object.required.add(name);
+                }
+
+                node = object.children.get(name);
+            }
+
+            return this;
+        }
+
+        /**
+         * Gets or creates the node for {@code tokens[i]}, given its existing
+         * node.
+         */
+        private static Node child(Node existing, boolean last, String[] tokens,
+                                  int i, Class<?> type, String key)
+        {
+            final Node expected = last ? new LeafNode(type)
+                    : tokens[i + 1].equals("#") ? new ArrayNode(null)
+                    : new ObjectNode();
+
+            if (existing == null) {
+                return expected;
+            }
+
+            if (last || existing.getClass() != expected.getClass()) {
+                throw conflict(key);
+            }
+
+            return existing;
+        }
+
+        private static IllegalArgumentException conflict(String key)
+        {
+            return new IllegalArgumentException(
+                    "Key conflicts with an earlier declaration: " + key);
+        }
+    }
+}
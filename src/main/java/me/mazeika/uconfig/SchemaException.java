@@ -0,0 +1,32 @@
+package me.mazeika.uconfig;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when a loaded config does not match its {@link Schema}. Every
+ * mismatch found in the config is reported at once.
+ */
+public class SchemaException extends ParseException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> errors;
+
+    public SchemaException(List<String> errors)
+    {
+        super("Config does not match its schema:\n  "
+                + String.join("\n  ", errors));
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Gets the mismatches found, each prefixed with the key it was found at.
+     *
+     * @return the mismatches
+     */
+    public List<String> getErrors()
+    {
+        return errors;
+    }
+}
@@ -0,0 +1,43 @@
+package me.mazeika.uconfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Somewhere a config's raw contents can be read from.
+ */
+interface Source
+{
+    /**
+     * Opens a stream over the contents of this source. The caller is
+     * responsible for closing it.
+     *
+     * @return a stream over the contents
+     *
+     * @throws IOException if the source cannot be opened
+     */
+    InputStream open() throws IOException;
+
+    /**
+     * Describes this source for error messages.
+     *
+     * @return a short description, such as a file path
+     */
+    default String describe()
+    {
+        return "config";
+    }
+
+    /**
+     * Gets the directory relative paths in this source are resolved against,
+     * such as those of included files.
+     *
+     * @return the directory
+     */
+    default Path directory()
+    {
+        return Paths.get("").toAbsolutePath();
+    }
+}
@@ -1,82 +1,219 @@
 package me.mazeika.uconfig;
 
+import me.mazeika.uconfig.parsing.Locations;
 import me.mazeika.uconfig.parsing.Parser;
 import me.mazeika.uconfig.parsing.ParserType;
+import me.mazeika.uconfig.parsing.XMLElement;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractSet;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 class UConfig extends Config
 {
-    private static final String KEY_INDICES_DELIMITER = "#";
+    static final String KEY_INDICES_DELIMITER = "#";
     private static final String KEY_INDICES_ESCAPED_DELIMITER = "\\#";
-    private static final String KEY_INDICES_ESCAPE = "\\";
+    private static final int[] NO_INDICES = {};
+    static final String KEY_INDICES_ESCAPE = "\\";
 
-    private final File file;
+    /**
+     * The kinds of values that a default value of another kind is never read
+     * as.
+     */
+    private static final Class<?>[] KINDS = {
+            String.class, Number.class, Boolean.class, Map.class, List.class
+    };
+
+    private final Source source;
     private final boolean lazyLoad;
-    private final Parser parser;
-    private final ParserType parserType;
+    private final LoadOptions options;
+
+    /**
+     * Guards loading, unloading and committing the tree. A lock rather than
+     * this config's monitor, so that virtual threads doing or waiting on the
+     * blocking IO of a load do not pin their carrier threads. Views never
+     * load, so have none.
+     */
+    private final ReentrantLock lock;
 
-    private Object data;
+    private Parser parser;
+    private ParserType parserType;
+
+    /**
+     * The loaded tree. Volatile so that a tree replaced by a commit is seen
+     * by readers that do not take the lock.
+     */
+    private volatile Object data;
+
+    /**
+     * Where the loaded tree's nodes came from, if tracked.
+     */
+    private volatile Locations locations;
+    private LoadTracker tracker;
+
+    /**
+     * The constants made by this config, by key and default value, to be
+     * refreshed whenever the tree is replaced. Views never change, so have
+     * none.
+     */
+    private final Map<List<Object>, ConfigConstant<?>> constants;
+
+    /**
+     * Set on every read of a lazily loaded config, and cleared by whoever
+     * tracks its use, including when the read loaded the tree. Reads and
+     * writes are racy, which only makes the tracking approximate.
+     */
+    boolean referenced;
 
     public UConfig(File file, boolean lazyLoad)
     {
-        this.file = file;
+        this(new FileSource(file), Parser.create(file.getName()),
+                lazyLoad, LoadOptions.DEFAULT);
+    }
+
+    /**
+     * Creates a config that reads from the given {@code source}.
+     *
+     * @param source the source to read the config from
+     * @param parser the parser to use, or {@code null} if the type should be
+     *               sniffed from the contents of the source when it is loaded
+     * @param lazyLoad whether the source should be lazily loaded
+     * @param options the options to load the source with
+     */
+    UConfig(Source source, Parser parser, boolean lazyLoad,
+            LoadOptions options)
+    {
+        this.source = source;
         this.lazyLoad = lazyLoad;
-        parser = Parser.create(file.getName());
-        parserType = parser.getType();
+        this.options = options;
+        this.parser = parser;
+        this.lock = new ReentrantLock();
+        this.constants = new ConcurrentHashMap<>();
+
+        if (parser != null) {
+            options.configure(parser, source);
+            parserType = parser.getType();
+        }
 
         if (! lazyLoad) {
             getData();
         }
     }
 
+    /**
+     * Creates a view of an already loaded subtree.
+     *
+     * @param data the root of the subtree
+     * @param parserType the type the subtree was parsed from
+     */
+    private UConfig(Object data, ParserType parserType)
+    {
+        this.source = null;
+        this.lazyLoad = false;
+        this.options = LoadOptions.DEFAULT;
+        this.lock = null;
+        this.constants = null;
+        this.data = data;
+        this.parserType = parserType;
+    }
+
+    /**
+     * Creates a view of an already loaded tree. Reads from the view see any
+     * later changes made to the tree.
+     *
+     * @param data the root of the tree
+     * @param parserType the type the tree was parsed from
+     *
+     * @return the view
+     */
+    static Config view(Object data, ParserType parserType)
+    {
+        return new UConfig(data, parserType);
+    }
+
+    /**
+     * Creates a lazily loaded config that immediately starts loading the
+     * given {@code source} on the given {@code executor}. Readers arriving
+     * before the load finishes wait for it rather than starting their own. If
+     * the background load fails, the first reader retries it.
+     *
+     * @param source the source to read the config from
+     * @param parser the parser to use, or {@code null} if the type should be
+     *               sniffed from the contents of the source when it is loaded
+     * @param executor the executor to load the source on
+     * @param options the options to load the source with
+     */
+    UConfig(Source source, Parser parser, Executor executor,
+            LoadOptions options)
+    {
+        this(source, parser, true, options);
+
+        executor.execute(() -> {
+            try {
+                getData();
+            }
+            catch (RuntimeException ignored) {
+                // retried, and thrown, by the first reader
+            }
+        });
+    }
+
     @Override
     public <T> T getOrDefault(String key, T defaultValue)
     {
-        return getOrDefaultWithIndices(key, defaultValue);
+        return getOrDefaultWithIndices(key, defaultValue, NO_INDICES);
     }
 
     @Override
     public <T> T getOrDefaultWithIndices(String key, T defaultValue,
                                          int... indices)
     {
-        final String[] parsedKey = parseKey(key, indices);
-
-        Object data;
+        // parsed once per key and cached, so that reads allocate nothing
+        final KeyPath path = KeyPath.of(key);
 
-        if (lazyLoad) {
-            data = getData();
-        }
-        else {
-            data = this.data;
-        }
+        path.check(indices);
 
-        for (int i = 0; i < parsedKey.length; i++) {
-            String keyPart = parsedKey[i];
+        Object data = root();
 
-            // noinspection StringEquality
+        for (int i = 0; i < path.size(); i++) {
             if (! (data instanceof Map) && ! (data instanceof List)
-                    &&  i == parsedKey.length - 1) {
+                    &&  i == path.size() - 1) {
                 return defaultValue;
             }
 
-            if (isPositiveInteger(keyPart)) {
+            final int index = path.index(i, indices);
+
+            if (index >= 0) {
                 if (data instanceof List) {
-                    final int keyPartInt = Integer.parseUnsignedInt(keyPart);
                     final List list = (List) data;
 
-                    if (keyPartInt >= list.size()) {
+                    if (index >= list.size()
+                            || (data = list.get(index)) == null) {
                         return defaultValue;
                     }
 
-                    data = list.get(keyPartInt);
                     continue;
                 }
                 else {
@@ -84,41 +221,32 @@ class UConfig extends Config
                 }
             }
 
-            if (keyPart.startsWith(KEY_INDICES_ESCAPE)) {
-                keyPart = keyPart.substring(1);
-            }
-
             if (data instanceof Map) {
                 // noinspection unchecked
-                if ((data = ((Map<String, Object>) data).get(keyPart))
-                        == null) {
+                if ((data = ((Map<String, Object>) data).get(
+                        path.name(i, indices))) == null) {
                     return defaultValue;
                 }
-
-                if (parserType == ParserType.XML && data instanceof Map) {
-                    final Object content;
-
-                    // noinspection unchecked
-                    if ((content = ((Map<String, Object>) data).get("content"))
-                            != null) {
-                        data = content;
-                        break;
-                    }
-                }
             }
         }
 
         /*
-        First, check that we're dealing with XML. Next, if we *shouldn't* return
-        a map and the data *is* a map, return the default value. The reasoning
-        is that an empty XML element is actually an empty map due to how it's
-        converted to JSON. So, if we request the key `path.to.value` and the XML
-        looks like `<path><to><value/></to></path>`, for example, the default
-        value should be returned.
+        An XML element's value is its text. An element without text is empty
+        (`""`) if it's blank, as in `<value/>`; otherwise, it only holds
+        attributes or children, so it has no value of its own.
          */
-        if (parserType == ParserType.XML && ! (defaultValue instanceof Map)
-                && data instanceof Map) {
-            return defaultValue;
+        if (data instanceof XMLElement && ! (defaultValue instanceof Map)) {
+            final XMLElement element = (XMLElement) data;
+
+            if (element.getText() != null) {
+                data = element.getText();
+            }
+            else if (element.isBlank()) {
+                data = "";
+            }
+            else {
+                return defaultValue;
+            }
         }
 
         /*
@@ -130,8 +258,6 @@ class UConfig extends Config
             return defaultValue;
         }
 
-        final String dataStr = data.toString();
-
         /*
         Check if the return type should be a string... if so, we'll want to
         convert whatever it is we're going to return into a string so that
@@ -139,15 +265,17 @@ class UConfig extends Config
          */
         if (defaultValue instanceof String) {
             // noinspection unchecked
-            return (T) dataStr;
+            return (T) data.toString();
         }
 
         /*
         Properties files only give strings when accessing keys. As such, they
         will be converted to their correct type if they're requested to be an
-        int or double.
+        int or double, unless a schema already converted them when loaded.
          */
-        if (parserType == ParserType.PROPERTIES) {
+        if (parserType == ParserType.PROPERTIES && data instanceof String) {
+            final String dataStr = (String) data;
+
             if (defaultValue instanceof Integer) {
                 // noinspection unchecked
                 return (T) (Integer) Integer.parseInt(dataStr);
@@ -159,14 +287,55 @@ class UConfig extends Config
             }
         }
 
+        if (defaultValue != null && ! isOfType(data, defaultValue)) {
+            throw new ConfigTypeException(key, typeOf(defaultValue), data);
+        }
+
         // noinspection unchecked
         return (T) data;
     }
 
+    /**
+     * Gets if the given value can be returned for the given default value.
+     * Only values of clearly different kinds are rejected, such as a string
+     * for a number; the exact class does not matter, as the default may
+     * stand for any supertype of it, as in {@code (Number) 0L}.
+     */
+    private static boolean isOfType(Object value, Object defaultValue)
+    {
+        final Class<?> expected = kindOf(defaultValue);
+        final Class<?> actual = kindOf(value);
+
+        return expected == null || actual == null || expected == actual;
+    }
+
+    /**
+     * Gets the kind of the given value, which is one of string, number,
+     * boolean, map and list, or {@code null} if it is none of them.
+     */
+    private static Class<?> kindOf(Object value)
+    {
+        for (Class<?> kind : KINDS) {
+            if (kind.isInstance(value)) {
+                return kind;
+            }
+        }
+
+        return null;
+    }
+
+    private static Class<?> typeOf(Object defaultValue)
+    {
+        final Class<?> kind = kindOf(defaultValue);
+
+        return kind == Map.class || kind == List.class
+                ? kind : defaultValue.getClass();
+    }
+
     @Override
     public <T> Optional<T> get(String key)
     {
-        return getWithIndices(key);
+        return getWithIndices(key, NO_INDICES);
     }
 
     @Override
@@ -177,6 +346,405 @@ class UConfig extends Config
                 indices));
     }
 
+    @Override
+    public Stream<Config> stream(String prefix)
+    {
+        final Object node = resolve(prefix);
+
+        if (node instanceof List) {
+            return ((List<?>) node).stream().map(this::view);
+        }
+
+        if (node instanceof Map) {
+            return ((Map<?, ?>) node).values().stream().map(this::view);
+        }
+
+        return Stream.empty();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Stream<T> values(String prefix)
+    {
+        final Object node = resolve(prefix);
+
+        if (node instanceof List) {
+            return ((List<T>) node).stream();
+        }
+
+        if (node instanceof Map) {
+            return ((Map<Object, T>) node).values().stream();
+        }
+
+        return Stream.empty();
+    }
+
+    @Override
+    public void forEach(String prefix, BiConsumer<String, Config> action)
+    {
+        final Object node = resolve(prefix);
+
+        if (node instanceof List) {
+            final List<?> list = (List<?>) node;
+
+            for (int i = 0; i < list.size(); i++) {
+                action.accept(String.valueOf(i), view(list.get(i)));
+            }
+        }
+        else if (node instanceof Map) {
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) node).entrySet()) {
+                action.accept(String.valueOf(e.getKey()), view(e.getValue()));
+            }
+        }
+    }
+
+    @Override
+    public Set<String> keys(String prefix)
+    {
+        final Object node = resolve(prefix);
+
+        if (node instanceof List) {
+            return new IndexSet(((List<?>) node).size());
+        }
+
+        if (node instanceof Map) {
+            return new KeySet((Map<?, ?>) node);
+        }
+
+        return Collections.emptySet();
+    }
+
+    @Override
+    public String explain(String key)
+    {
+        final StringBuilder out = new StringBuilder("'").append(key)
+                .append("' in ").append(source == null ? "a view"
+                        : source.describe());
+        final String[] parsedKey;
+
+        try {
+            parsedKey = parseKey(key);
+        }
+        catch (IllegalArgumentException e) {
+            return out.append(": invalid key: ").append(e.getMessage())
+                    .toString();
+        }
+
+        final Object root = root();
+        final Locations locations = this.locations;
+
+        out.append(" (").append(parserType).append(')');
+
+        Object node = root;
+
+        for (String keyPart : parsedKey) {
+            final Object parent = node;
+            final Object name;
+
+            out.append("\n  ").append(keyPart).append(": ");
+
+            if (isPositiveInteger(keyPart)) {
+                if (! (parent instanceof List)) {
+                    return out.append("not found; an index, but ")
+                            .append(describe(parent))
+                            .append(" is not a list").toString();
+                }
+
+                final int index = Integer.parseUnsignedInt(keyPart);
+                final List<?> list = (List<?>) parent;
+
+                if (index >= list.size()) {
+                    return out.append("not found; past the end of ")
+                            .append(describe(parent)).toString();
+                }
+
+                name = index;
+                node = list.get(index);
+            }
+            else {
+                if (! (parent instanceof Map)) {
+                    return out.append("not found; ").append(describe(parent))
+                            .append(" has no keys").toString();
+                }
+
+                name = keyPart.startsWith(KEY_INDICES_ESCAPE)
+                        ? keyPart.substring(1) : keyPart;
+                node = ((Map<?, ?>) parent).get(name);
+
+                if (node == null) {
+                    return out.append("not found; keys here are ")
+                            .append(((Map<?, ?>) parent).keySet()).toString();
+                }
+            }
+
+            out.append(describe(node));
+
+            final String location = locations == null ? null
+                    : locations.get(parent, name);
+
+            if (location != null) {
+                out.append(" at ").append(location);
+            }
+        }
+
+        if (node instanceof XMLElement) {
+            final XMLElement element = (XMLElement) node;
+
+            out.append("\n  value: ").append(element.getText() != null
+                    ? "the element's text" : element.isBlank()
+                    ? "\"\", as the element is blank"
+                    : "none, as the element has no text");
+        }
+        else if (parserType == ParserType.PROPERTIES
+                && node instanceof String) {
+            out.append("\n  value: a string, converted when read with an "
+                    + "Integer or Double default");
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Describes a node for {@link #explain(String)}.
+     */
+    private static String describe(Object node)
+    {
+        if (node instanceof XMLElement) {
+            final XMLElement element = (XMLElement) node;
+
+            return "an element with " + element.getChildren().size()
+                    + " children and " + element.getAttributes().size()
+                    + " attributes" + (element.getText() == null ? ""
+                    : ", text '" + element.getText() + "' ("
+                    + element.getText().getClass().getSimpleName() + ")");
+        }
+
+        if (node instanceof Map) {
+            return "a map of " + ((Map<?, ?>) node).size() + " entries";
+        }
+
+        if (node instanceof List) {
+            return "a list of " + ((List<?>) node).size() + " elements";
+        }
+
+        if (node == null) {
+            return "null";
+        }
+
+        return "'" + node + "' (" + node.getClass().getSimpleName() + ")";
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> ConfigConstant<T> constant(String key, T defaultValue)
+    {
+        if (constants == null) {
+            return new ConfigConstant<>(key, defaultValue,
+                    getOrDefault(key, defaultValue));
+        }
+
+        final List<Object> id = Arrays.asList(key, defaultValue);
+        ConfigConstant<?> constant = constants.get(id);
+
+        if (constant == null) {
+            // made while holding the lock, so that a commit or load cannot
+            // replace the tree between looking up the value and publishing
+            // the constant for refreshing
+            lock.lock();
+
+            try {
+                constant = constants.computeIfAbsent(id,
+                        k -> new ConfigConstant<>(key, defaultValue,
+                                getOrDefault(key, defaultValue)));
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        return (ConfigConstant<T>) constant;
+    }
+
+    @Override
+    public ConfigEditor edit()
+    {
+        if (! (source instanceof FileSource)) {
+            throw new UnsupportedOperationException(
+                    "Only configs created from files can be edited");
+        }
+
+        if (options.isInterpolating()) {
+            throw new UnsupportedOperationException("Configs with resolved "
+                    + "references cannot be edited, as writing them back "
+                    + "would lose the references");
+        }
+
+        if (options.isIncluding()) {
+            throw new UnsupportedOperationException("Configs with resolved "
+                    + "includes cannot be edited, as writing them back "
+                    + "would inline the included files");
+        }
+
+        if (parserType == null) {
+            root();
+        }
+
+        return new ConfigEditor(this, parserType);
+    }
+
+    /**
+     * Replaces the tree with an edited one and writes it back to the file.
+     * The new tree is written to a temporary file beside the config's file,
+     * which then atomically replaces it, so the file is never left half
+     * written.
+     *
+     * @param edit creates the edited tree from the current one, which it must
+     *             not change
+     *
+     * @throws SchemaException if the edited tree does not match the schema
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    void commit(UnaryOperator<Object> edit)
+    {
+        final File file = ((FileSource) source).getFile();
+        final Object updated;
+
+        lock.lock();
+
+        try {
+            final Object current = data != null ? data : load();
+
+            updated = options.validate(edit.apply(current), parserType);
+
+            try {
+                write(updated, file);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            // the edited containers are copies, so their locations are
+            // unknown
+            locations = null;
+            data = updated;
+            refreshConstants();
+        }
+        finally {
+            lock.unlock();
+        }
+
+        if (tracker != null) {
+            tracker.replaced(this, updated);
+        }
+    }
+
+    private void write(Object tree, File file) throws IOException
+    {
+        final File dir = file.getAbsoluteFile().getParentFile();
+        final Path temp = Files.createTempFile(dir.toPath(),
+                "." + file.getName(), ".tmp");
+
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+                parser.write(tree, new BufferedOutputStream(out));
+                out.getFD().sync();
+            }
+
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Gets the loaded data, loading it first if needed.
+     *
+     * @return the root of the tree
+     */
+    private Object root()
+    {
+        if (lazyLoad) {
+            referenced = true;
+            return getData();
+        }
+
+        return data;
+    }
+
+    /**
+     * Gets the root of the tree, loading it first if needed, for code that
+     * walks the whole tree.
+     *
+     * @return the root of the tree
+     */
+    Object tree()
+    {
+        return root();
+    }
+
+    /**
+     * Gets the type the tree was parsed from, loading it first if needed.
+     *
+     * @return the type
+     */
+    ParserType type()
+    {
+        root();
+        return parserType;
+    }
+
+    /**
+     * Gets the map or list at the given {@code prefix}, without the
+     * conversions done by {@link #getOrDefault(String, Object)}.
+     *
+     * @param prefix the key in special dot notation; blank for the root
+     *
+     * @return the node, or {@code null} if not found
+     */
+    private Object resolve(String prefix)
+    {
+        Object node = root();
+
+        if (prefix.trim().isEmpty()) {
+            return node;
+        }
+
+        final KeyPath path = KeyPath.of(prefix);
+
+        for (int i = 0; i < path.size(); i++) {
+            final int index = path.index(i, NO_INDICES);
+
+            if (node instanceof List && index >= 0) {
+                final List<?> list = (List<?>) node;
+
+                node = index < list.size() ? list.get(index) : null;
+            }
+            else if (node instanceof Map) {
+                node = ((Map<?, ?>) node).get(path.name(i, NO_INDICES));
+            }
+            else {
+                return null;
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Creates a lightweight view of the given child node, sharing this
+     * config's tree.
+     *
+     * @param node the child node
+     *
+     * @return the view
+     */
+    private Config view(Object node)
+    {
+        return view(node, parserType);
+    }
+
     /**
      * Parses the given {@code key} into tokens. See special dot notation syntax
      * in {@link Config}.
@@ -189,7 +757,7 @@ class UConfig extends Config
      * @throws IllegalArgumentException if not enough indices were supplied to
      *                                  replace the key index delimiters
      */
-    private String[] parseKey(String key, int... indices)
+    static String[] parseKey(String key, int... indices)
     {
         key = key.trim();
 
@@ -225,34 +793,145 @@ class UConfig extends Config
         return tokens;
     }
 
+    /**
+     * Sets the tracker notified whenever this config loads. Must be called
+     * before the config is shared with other threads.
+     *
+     * @param tracker the tracker
+     */
+    void track(LoadTracker tracker)
+    {
+        this.tracker = tracker;
+    }
+
+    /**
+     * Drops the loaded tree, if it is still the given one, so that the next
+     * read loads it again. Only lazily loaded configs may be unloaded.
+     *
+     * @param expected the tree expected to be loaded
+     *
+     * @return {@code true} if the tree was dropped
+     */
+    boolean unload(Object expected)
+    {
+        if (! lazyLoad) {
+            return false;
+        }
+
+        lock.lock();
+
+        try {
+            if (data != expected) {
+                return false;
+            }
+
+            data = null;
+            locations = null;
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Looks up the value of every constant again, after the tree was
+     * replaced. Must be called while holding this config's lock. Never
+     * throws, so the tree is never left replaced but unaccounted for.
+     */
+    private void refreshConstants()
+    {
+        for (ConfigConstant<?> constant : constants.values()) {
+            constant.refresh(this);
+        }
+    }
+
     /**
      * Gets the config data. Caches the data and returns the cached data if
-     * available. Otherwise, performs IO and reads/parses the file.
+     * available. Otherwise, loads it and notifies the tracker, if any.
      *
      * @return the map
      */
-    private synchronized Object getData()
+    private Object getData()
     {
-        if (data == null) {
-            final StringBuilder builder = new StringBuilder();
+        Object loaded = data;
 
-            try (BufferedReader in = new BufferedReader(new FileReader(file))) {
-                String line;
+        // once loaded, reads take no lock at all
+        if (loaded != null) {
+            return loaded;
+        }
 
-                while ((line = in.readLine()) != null) {
-                    builder.append(line).append('\n');
-                }
+        lock.lock();
+
+        try {
+            loaded = data;
+
+            if (loaded != null) {
+                return loaded;
             }
-            catch (IOException e) {
-                throw new RuntimeException(e);
+
+            loaded = load();
+        }
+        finally {
+            lock.unlock();
+        }
+
+        if (tracker != null && loaded != null) {
+            tracker.loaded(this, loaded);
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Performs IO and parses the source as it is read, caching the result.
+     * Must be called while holding this config's lock.
+     *
+     * @return the map
+     */
+    private Object load()
+    {
+        try (InputStream in = buffer(source.open())) {
+            if (parser == null) {
+                parser = options.configure(
+                        Parser.create(Parser.detect(in)), source);
+                parserType = parser.getType();
+            }
+
+            if (options.isLocating()) {
+                final Locations tracked = new Locations();
+                final Object tree = parser.parse(in, tracked);
+
+                locations = tracked;
+                data = options.process(tree, parserType);
+            }
+            else {
+                data = options.process(parser.parse(in), parserType);
             }
 
-            data = parser.parse(builder.toString());
+            refreshConstants();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not read "
+                    + source.describe(), e);
         }
 
         return data;
     }
 
+    /**
+     * Buffers the given stream, unless it is already buffered in memory.
+     * Streams over byte arrays and buffers are read as they are.
+     *
+     * @param in the stream to buffer
+     *
+     * @return a stream supporting {@link InputStream#mark(int)}
+     */
+    private static InputStream buffer(InputStream in)
+    {
+        return in.markSupported() ? in : new BufferedInputStream(in);
+    }
+
     /**
      * Gets if the given string is a positive integer.
      *
@@ -260,9 +939,11 @@ class UConfig extends Config
      *
      * @return {@code true} if the given string is a positive integer
      */
-    private boolean isPositiveInteger(String str)
+    static boolean isPositiveInteger(String str)
     {
-        for (char c : str.toCharArray()) {
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+
             if (c < '0' || c > '9') {
                 return false;
             }
@@ -270,4 +951,103 @@ class UConfig extends Config
 
         return true;
     }
+
+    /**
+     * A read-only view of the keys of a map, as strings.
+     */
+    private static class KeySet extends AbstractSet<String>
+    {
+        private final Map<?, ?> map;
+
+        KeySet(Map<?, ?> map)
+        {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<String> iterator()
+        {
+            final Iterator<?> it = map.keySet().iterator();
+
+            return new Iterator<String>()
+            {
+                @Override
+                public boolean hasNext()
+                {
+                    return it.hasNext();
+                }
+
+                @Override
+                public String next()
+                {
+                    return String.valueOf(it.next());
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public int size()
+        {
+            return map.size();
+        }
+    }
+
+    /**
+     * A read-only view of the indices of a list, as strings.
+     */
+    private static class IndexSet extends AbstractSet<String>
+    {
+        private final int size;
+
+        IndexSet(int size)
+        {
+            this.size = size;
+        }
+
+        @Override
+        public Iterator<String> iterator()
+        {
+            return new Iterator<String>()
+            {
+                private int next;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return next < size;
+                }
+
+                @Override
+                public String next()
+                {
+                    if (next >= size) {
+                        throw new NoSuchElementException();
+                    }
+
+                    return String.valueOf(next++);
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            return o instanceof String && ! ((String) o).isEmpty()
+                    && isPositiveInteger((String) o)
+                    && ((String) o).length() < 10
+                    && Integer.parseInt((String) o) < size;
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+    }
 }
@@ -0,0 +1,474 @@
+package me.mazeika.uconfig.parsing;
+
+import me.mazeika.uconfig.ParseException;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves include directives in trees parsed from YAML or JSON, replacing
+ * each with the tree of the file it names. A directive is either a value
+ * tagged {@code !include} in YAML, as in {@code db: !include db.yml}, or a
+ * map holding nothing but an {@code $include} key, as in
+ * {@code "db": {"$include": "db.json"}}, which also works in JSON. Relative
+ * paths are resolved against the directory of the including file.
+ * <p>
+ * Included files may include others in turn. The includes of a file do not
+ * depend on each other, so they are read and parsed in parallel on the
+ * common fork/join pool. Each file's parsed tree is cached by its path, and
+ * reused for as long as the file's modification time and size stay the same,
+ * so reloading a config after one of its fragments changed only re-parses
+ * that fragment, once, however many sites include it. Instances are
+ * thread-safe, and are meant to be shared by every config that includes the
+ * same fragments.
+ */
+public final class Includes
+{
+    /**
+     * The key of a map that stands for an include directive.
+     */
+    public static final String INCLUDE_KEY = "$include";
+
+    /**
+     * Fragments beyond this many are evicted, least recently used first.
+     */
+    private static final int MAX_CACHED = 1024;
+
+    private final Map<Path, Fragment> cache = Collections.synchronizedMap(
+            new LinkedHashMap<Path, Fragment>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<Path, Fragment> eldest)
+                {
+                    return size() > MAX_CACHED;
+                }
+            });
+
+    /**
+     * The files being parsed, each completed once its tree is cached, so that
+     * a file included from several sites at once is parsed only once.
+     */
+    private final ConcurrentMap<Path, CompletableFuture<Void>> parsing =
+            new ConcurrentHashMap<>();
+
+    private final AtomicInteger parses = new AtomicInteger();
+
+    /**
+     * Replaces every include directive in the given tree, in place, with the
+     * tree of the file it names.
+     *
+     * @param tree the tree to resolve
+     * @param directory the directory relative paths are resolved against
+     * @param interning whether included files are parsed with interning
+     *
+     * @return the resolved tree, which is only a different object if the
+     *         tree was itself a directive
+     *
+     * @throws ParseException if an included file cannot be parsed, is not
+     *                        YAML or JSON, or includes itself
+     * @throws UncheckedIOException if an included file cannot be read
+     */
+    Object resolve(Object tree, Path directory, boolean interning)
+    {
+        try {
+            return ForkJoinPool.commonPool().invoke(new Assembly(tree,
+                    directory.toAbsolutePath(), interning,
+                    Collections.emptyList()));
+        }
+        catch (RuntimeException e) {
+            // an exception thrown by another thread is rethrown wrapped in a
+            // copy of itself, which only has the original's description
+            final Throwable cause = e.getCause();
+
+            if (cause != null && cause.getClass() == e.getClass()
+                    && cause.toString().equals(e.getMessage())) {
+                throw (RuntimeException) cause;
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Gets how many times a file has been parsed, rather than taken from the
+     * cache.
+     *
+     * @return the number of parses
+     */
+    int parses()
+    {
+        return parses.get();
+    }
+
+    /**
+     * Gets the raw tree of the given file, with its own directives left
+     * unresolved, from the cache if the file has not changed. If another
+     * thread is already parsing the file, waits for it instead of parsing the
+     * file again. The returned tree is shared, so must be copied before being
+     * changed.
+     */
+    private Object fragment(Path path, boolean interning) throws IOException
+    {
+        while (true) {
+            final BasicFileAttributes attributes = Files.readAttributes(path,
+                    BasicFileAttributes.class);
+            Fragment cached = cache.get(path);
+
+            if (cached != null && cached.isCurrent(attributes)) {
+                return cached.tree;
+            }
+
+            final CompletableFuture<Void> mine = new CompletableFuture<>();
+            final CompletableFuture<Void> theirs =
+                    parsing.putIfAbsent(path, mine);
+
+            if (theirs != null) {
+                // look again once it is cached
+                theirs.join();
+                continue;
+            }
+
+            try {
+                // it may have been cached since it was looked up
+                cached = cache.get(path);
+
+                if (cached != null && cached.isCurrent(attributes)) {
+                    return cached.tree;
+                }
+
+                final Object tree = parse(path, interning);
+
+                parses.incrementAndGet();
+                cache.put(path, new Fragment(attributes, tree));
+
+                return tree;
+            }
+            finally {
+                parsing.remove(path, mine);
+                mine.complete(null);
+            }
+        }
+    }
+
+    private Object parse(Path path, boolean interning) throws IOException
+    {
+        final ParserType type = Parser.typeOf(path.getFileName().toString());
+
+        if (type != ParserType.YAML && type != ParserType.JSON) {
+            throw new ParseException("Only YAML and JSON files can be "
+                    + "included: " + path);
+        }
+
+        final SnakeYAMLParser parser = (SnakeYAMLParser) Parser.create(type);
+
+        parser.setInterning(interning);
+        parser.setIncludes(this, path.getParent());
+
+        try (InputStream in = Files.newInputStream(path)) {
+            return parser.parseUnresolved(new UnicodeReader(in));
+        }
+        catch (ParseException e) {
+            throw new ParseException("Could not parse included " + path
+                    + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets the directive the given node stands for.
+     *
+     * @return the included path, or {@code null} if the node is not a
+     *         directive
+     */
+    private static String directive(Object node)
+    {
+        if (node instanceof Directive) {
+            return ((Directive) node).path;
+        }
+
+        if (node instanceof Map && ((Map<?, ?>) node).size() == 1) {
+            final Object path = ((Map<?, ?>) node).get(INCLUDE_KEY);
+
+            if (path instanceof String) {
+                return (String) path;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Copies the maps and lists of the given tree, sharing its scalars.
+     */
+    private static Object copy(Object node)
+    {
+        if (node instanceof Map) {
+            final Map<Object, Object> copy = new LinkedHashMap<>();
+
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) node).entrySet()) {
+                copy.put(e.getKey(), copy(e.getValue()));
+            }
+
+            return copy;
+        }
+
+        if (node instanceof List) {
+            final List<Object> copy = new ArrayList<>(((List<?>) node).size());
+
+            for (Object item : (List<?>) node) {
+                copy.add(copy(item));
+            }
+
+            return copy;
+        }
+
+        return node;
+    }
+
+    /**
+     * The value of a YAML node tagged {@code !include}, before it is
+     * resolved.
+     */
+    static final class Directive
+    {
+        private final String path;
+
+        Directive(String path)
+        {
+            this.path = path;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "!include " + path;
+        }
+    }
+
+    private static final class Fragment
+    {
+        private final FileTime modified;
+        private final long size;
+        private final Object tree;
+
+        Fragment(BasicFileAttributes attributes, Object tree)
+        {
+            this.modified = attributes.lastModifiedTime();
+            this.size = attributes.size();
+            this.tree = tree;
+        }
+
+        boolean isCurrent(BasicFileAttributes attributes)
+        {
+            return modified.equals(attributes.lastModifiedTime())
+                    && size == attributes.size();
+        }
+    }
+
+    /**
+     * Where a directive was found: the map or list holding it, and its key or
+     * index there.
+     */
+    private static final class Site
+    {
+        private final Object parent;
+        private final Object key;
+        private final Inclusion inclusion;
+
+        Site(Object parent, Object key, Inclusion inclusion)
+        {
+            this.parent = parent;
+            this.key = key;
+            this.inclusion = inclusion;
+        }
+
+        @SuppressWarnings("unchecked")
+        void fill(Object tree)
+        {
+            if (parent instanceof Map) {
+                ((Map<Object, Object>) parent).put(key, tree);
+            }
+            else {
+                ((List<Object>) parent).set((Integer) key, tree);
+            }
+        }
+    }
+
+    /**
+     * Resolves the directives of a tree, including files in parallel.
+     */
+    private final class Assembly extends RecursiveTask<Object>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Object tree;
+        private final Path directory;
+        private final boolean interning;
+
+        /**
+         * The files being included by the ones above, to catch cycles.
+         */
+        private final List<Path> chain;
+
+        Assembly(Object tree, Path directory, boolean interning,
+                 List<Path> chain)
+        {
+            this.tree = tree;
+            this.directory = directory;
+            this.interning = interning;
+            this.chain = chain;
+        }
+
+        @Override
+        protected Object compute()
+        {
+            final String path = directive(tree);
+
+            if (path != null) {
+                return include(path).compute();
+            }
+
+            final List<Site> sites = new ArrayList<>();
+
+            find(tree, sites);
+
+            if (sites.size() == 1) {
+                sites.get(0).fill(sites.get(0).inclusion.compute());
+            }
+            else if (! sites.isEmpty()) {
+                final List<Inclusion> inclusions =
+                        new ArrayList<>(sites.size());
+
+                for (Site site : sites) {
+                    inclusions.add(site.inclusion);
+                }
+
+                ForkJoinTask.invokeAll(inclusions);
+
+                for (Site site : sites) {
+                    site.fill(site.inclusion.join());
+                }
+            }
+
+            return tree;
+        }
+
+        private void find(Object node, List<Site> sites)
+        {
+            if (node instanceof Map) {
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) node).entrySet()) {
+                    found(node, e.getKey(), e.getValue(), sites);
+                }
+            }
+            else if (node instanceof List) {
+                final List<?> list = (List<?>) node;
+
+                for (int i = 0; i < list.size(); i++) {
+                    found(node, i, list.get(i), sites);
+                }
+            }
+        }
+
+        private void found(Object parent, Object key, Object node,
+                           List<Site> sites)
+        {
+            final String path = directive(node);
+
+            if (path != null) {
+                sites.add(new Site(parent, key, include(path)));
+            }
+            else {
+                find(node, sites);
+            }
+        }
+
+        /**
+         * Checks that the given path can be included from here.
+         */
+        private Inclusion include(String path)
+        {
+            final Path file;
+
+            try {
+                file = directory.resolve(path).toRealPath();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Could not include " + path
+                        + " from " + directory, e);
+            }
+
+            if (chain.contains(file)) {
+                final StringBuilder cycle = new StringBuilder();
+
+                for (Path included : chain.subList(chain.indexOf(file),
+                        chain.size())) {
+                    cycle.append(included).append(" -> ");
+                }
+
+                throw new ParseException("Include cycle: "
+                        + cycle.append(file));
+            }
+
+            final List<Path> next = new ArrayList<>(chain.size() + 1);
+
+            next.addAll(chain);
+            next.add(file);
+
+            return new Inclusion(file, interning, next);
+        }
+    }
+
+    /**
+     * Reads and resolves one included file.
+     */
+    private final class Inclusion extends RecursiveTask<Object>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Path file;
+        private final boolean interning;
+
+        /**
+         * The files being included, ending with this one.
+         */
+        private final List<Path> chain;
+
+        Inclusion(Path file, boolean interning, List<Path> chain)
+        {
+            this.file = file;
+            this.interning = interning;
+            this.chain = chain;
+        }
+
+        @Override
+        protected Object compute()
+        {
+            try {
+                return new Assembly(copy(fragment(file, interning)),
+                        file.getParent(), interning, chain).compute();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Could not read included "
+                        + file, e);
+            }
+        }
+    }
+}
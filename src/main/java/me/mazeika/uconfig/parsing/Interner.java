@@ -0,0 +1,44 @@
+package me.mazeika.uconfig.parsing;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A table used to deduplicate keys and short scalar values while a single
+ * tree is being built, so that equal values share one instance. Unlike
+ * {@link String#intern()}, the table is thrown away with the load.
+ */
+final class Interner
+{
+    /**
+     * Strings longer than this are unlikely to repeat, so are not interned.
+     */
+    static final int MAX_LENGTH = 64;
+
+    private final Map<Object, Object> table = new HashMap<>();
+
+    /**
+     * Gets the shared instance equal to the given value, if the value is a
+     * string of at most {@link #MAX_LENGTH} characters or a boxed number or
+     * boolean. Any other value is returned as is.
+     *
+     * @param value the value to intern
+     *
+     * @return the shared instance
+     */
+    Object intern(Object value)
+    {
+        if (value instanceof String) {
+            if (((String) value).length() > MAX_LENGTH) {
+                return value;
+            }
+        }
+        else if (! (value instanceof Number) && ! (value instanceof Boolean)) {
+            return value;
+        }
+
+        final Object existing = table.putIfAbsent(value, value);
+
+        return existing != null ? existing : value;
+    }
+}
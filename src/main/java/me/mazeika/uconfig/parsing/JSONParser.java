@@ -2,14 +2,158 @@ package me.mazeika.uconfig.parsing;
 
 import org.yaml.snakeyaml.Yaml;
 
-class JSONParser extends Parser
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+class JSONParser extends SnakeYAMLParser
 {
-    private static final Yaml yaml = new Yaml();
+    @Override
+    Object load(Yaml yaml, Reader in)
+    {
+        return yaml.load(in);
+    }
 
+    /**
+     * Writes the given tree as JSON, indented by two spaces. Values JSON has
+     * no type for, such as durations, are written as strings.
+     */
     @Override
-    public Object parse(String input)
+    public void write(Object tree, OutputStream out) throws IOException
+    {
+        final Writer writer = new BufferedWriter(
+                new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        write(tree, writer, 0);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    private static void write(Object node, Writer out, int depth)
+            throws IOException
+    {
+        if (node instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) node;
+
+            if (map.isEmpty()) {
+                out.write("{}");
+                return;
+            }
+
+            out.write('{');
+
+            boolean first = true;
+
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                if (! first) {
+                    out.write(',');
+                }
+
+                first = false;
+                newLine(out, depth + 1);
+                writeString(String.valueOf(e.getKey()), out);
+                out.write(": ");
+                write(e.getValue(), out, depth + 1);
+            }
+
+            newLine(out, depth);
+            out.write('}');
+        }
+        else if (node instanceof List) {
+            final List<?> list = (List<?>) node;
+
+            if (list.isEmpty()) {
+                out.write("[]");
+                return;
+            }
+
+            out.write('[');
+
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+
+                newLine(out, depth + 1);
+                write(list.get(i), out, depth + 1);
+            }
+
+            newLine(out, depth);
+            out.write(']');
+        }
+        else if (node == null) {
+            out.write("null");
+        }
+        else if (node instanceof Boolean || (node instanceof Number
+                && ! isNonFinite((Number) node))) {
+            out.write(node.toString());
+        }
+        else if (node instanceof Enum) {
+            writeString(((Enum<?>) node).name(), out);
+        }
+        else {
+            writeString(node.toString(), out);
+        }
+    }
+
+    private static boolean isNonFinite(Number n)
+    {
+        return (n instanceof Double && (((Double) n).isNaN()
+                || ((Double) n).isInfinite()))
+                || (n instanceof Float && (((Float) n).isNaN()
+                || ((Float) n).isInfinite()));
+    }
+
+    private static void newLine(Writer out, int depth) throws IOException
+    {
+        out.write('\n');
+
+        for (int i = 0; i < depth; i++) {
+            out.write("  ");
+        }
+    }
+
+    private static void writeString(String str, Writer out)
+            throws IOException
     {
-        return yaml.load(input);
+        out.write('"');
+
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        out.write(c);
+                    }
+            }
+        }
+
+        out.write('"');
     }
 
     @Override
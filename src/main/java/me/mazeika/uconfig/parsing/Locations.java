@@ -0,0 +1,90 @@
+package me.mazeika.uconfig.parsing;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Where in its input each node of a parsed tree was found, as recorded by
+ * {@link Parser#parse(java.io.InputStream, Locations)}. A node is looked up
+ * by its parent map or list and its key or index in it, as scalars are not
+ * unique enough to be looked up by themselves.
+ * <p>
+ * Recording locations roughly doubles the memory held by a tree, so it is
+ * only done when asked for. Instances are not thread-safe while being
+ * recorded into, but may be read by many threads afterwards.
+ */
+public final class Locations
+{
+    private final Map<Object, Map<Object, Long>> byParent =
+            new IdentityHashMap<>();
+
+    /**
+     * Records the location of a node.
+     *
+     * @param parent the node's parent map or list
+     * @param key the node's key in a map, or its {@link Integer} index in a
+     *            list
+     * @param line the line, starting at 1
+     * @param column the column, starting at 1
+     */
+    void put(Object parent, Object key, int line, int column)
+    {
+        byParent.computeIfAbsent(parent, p -> new HashMap<>(4))
+                .put(key, ((long) line << 32) | (column & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Records the location of one node as that of another.
+     *
+     * @param fromParent the located node's parent
+     * @param fromKey the located node's key or index
+     * @param toParent the other node's parent
+     * @param toKey the other node's key or index
+     */
+    void copy(Object fromParent, Object fromKey, Object toParent,
+              Object toKey)
+    {
+        final Map<Object, Long> locations = byParent.get(fromParent);
+        final Long location = locations == null ? null
+                : locations.get(fromKey);
+
+        if (location != null) {
+            byParent.computeIfAbsent(toParent, p -> new HashMap<>(4))
+                    .put(toKey, location);
+        }
+    }
+
+    /**
+     * Gets the location of a node. For XML, a key not found as a child is
+     * looked up as an attribute.
+     *
+     * @param parent the node's parent map or list
+     * @param key the node's key in a map, or its {@link Integer} index in a
+     *            list
+     *
+     * @return the location, as in {@code "line 3, column 5"}, or {@code null}
+     *         if it was not recorded
+     */
+    public String get(Object parent, Object key)
+    {
+        final Map<Object, Long> locations = byParent.get(parent);
+
+        if (locations == null) {
+            return null;
+        }
+
+        Long location = locations.get(key);
+
+        if (location == null && parent instanceof XMLElement) {
+            location = locations.get(XMLElement.ATTRIBUTE_PREFIX + key);
+        }
+
+        if (location == null) {
+            return null;
+        }
+
+        return "line " + (location >>> 32) + ", column "
+                + (int) location.longValue();
+    }
+}
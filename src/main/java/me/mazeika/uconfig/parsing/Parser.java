@@ -2,8 +2,27 @@ package me.mazeika.uconfig.parsing;
 
 import me.mazeika.uconfig.ParseException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
 public abstract class Parser
 {
+    /**
+     * The maximum number of bytes looked at by {@link #detect(InputStream)}.
+     */
+    private static final int DETECT_LIMIT = 512;
+
+    private volatile boolean interning;
+    private volatile boolean parallel;
+    private volatile Includes includes;
+    private volatile Path includeDirectory;
+
     /**
      * Creates a parser appropriate for the given {@code fileName}.
      *
@@ -15,23 +34,218 @@ public abstract class Parser
      *                                       have a supported extension
      */
     public static Parser create(String fileName)
+    {
+        final ParserType type = typeOf(fileName);
+
+        if (type == null) {
+            throw new UnsupportedOperationException(
+                    fileName.substring(fileName.lastIndexOf('.') + 1)
+                            + " file type not supported");
+        }
+
+        return create(type);
+    }
+
+    /**
+     * Creates a parser for the given {@code type}.
+     *
+     * @param type the type of input the parser should accept
+     *
+     * @return a new parser for the given {@code type}
+     */
+    public static Parser create(ParserType type)
+    {
+        switch (type) {
+            case JSON:
+                return new JSONParser();
+            case YAML:
+                return new YAMLParser();
+            case XML:
+                return new XMLParser();
+            case PROPERTIES:
+                return new PropertiesParser();
+            default:
+                throw new UnsupportedOperationException(
+                        type + " type not supported");
+        }
+    }
+
+    /**
+     * Gets the parser type appropriate for the extension of the given
+     * {@code fileName}.
+     *
+     * @param fileName the file name
+     *
+     * @return the parser type, or {@code null} if the extension is not
+     *         supported
+     */
+    public static ParserType typeOf(String fileName)
     {
         final String ext = fileName.substring(fileName.lastIndexOf('.') + 1);
 
         switch (ext) {
             case "json":
-                return new JSONParser();
+                return ParserType.JSON;
             case "yaml":
             case "yml":
-                return new YAMLParser();
+                return ParserType.YAML;
             case "xml":
-                return new XMLParser();
+                return ParserType.XML;
             case "properties":
-                return new PropertiesParser();
+                return ParserType.PROPERTIES;
             default:
-                throw new UnsupportedOperationException(
-                        ext + " file type not supported");
+                return null;
+        }
+    }
+
+    /**
+     * Sniffs the type of the content at the head of the given stream. Only
+     * the first few hundred bytes are looked at, and the stream is reset
+     * afterwards, so it <em>must</em> support {@link InputStream#mark(int)}.
+     * <p>
+     * Content starting with <code>'{'</code> or {@code '['} is JSON and
+     * content starting with {@code '<'} is XML. A line starting with a
+     * standard YAML tag, such as {@code !!map}, means YAML. Any other line
+     * starting with {@code '!'} may be a local tag, such as
+     * {@code !include}, or a properties comment, so it is skipped, as are
+     * {@code '#'} comments and blank lines, and the next line decides: a
+     * {@code '='} before any {@code ':'} means properties, while a list item,
+     * a document marker, or a {@code ':'} followed by a space or line end
+     * means YAML. Anything else is treated as properties, and content with
+     * no deciding line as YAML.
+     *
+     * @param in the stream to sniff
+     *
+     * @return the detected type
+     *
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the stream does not support marking
+     */
+    public static ParserType detect(InputStream in) throws IOException
+    {
+        if (! in.markSupported()) {
+            throw new IllegalArgumentException(
+                    "Stream must support mark/reset to be sniffed");
         }
+
+        final byte[] head = new byte[DETECT_LIMIT];
+        int len = 0;
+
+        in.mark(DETECT_LIMIT);
+
+        try {
+            int read;
+
+            while (len < head.length
+                    && (read = in.read(head, len, head.length - len)) != -1) {
+                len += read;
+            }
+        }
+        finally {
+            in.reset();
+        }
+
+        int i = 0;
+
+        // skip a UTF-8 byte order mark
+        if (len >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB
+                && (head[2] & 0xFF) == 0xBF) {
+            i = 3;
+        }
+
+        while (i < len) {
+            // skip leading whitespace
+            while (i < len && Character.isWhitespace(head[i])) {
+                i++;
+            }
+
+            if (i == len) {
+                break;
+            }
+
+            final int lineEnd = indexOf(head, '\n', i, len);
+
+            switch (head[i]) {
+                case '{':
+                case '[':
+                    return ParserType.JSON;
+                case '<':
+                    return ParserType.XML;
+                case '#':
+                    // comment line; look at the next one
+                    i = lineEnd + 1;
+                    continue;
+                case '!':
+                    // a standard tag; a local one cannot be told apart from
+                    // a properties comment, so is skipped like one
+                    if (i + 2 < len && head[i + 1] == '!'
+                            && ! Character.isWhitespace(head[i + 2])) {
+                        return ParserType.YAML;
+                    }
+
+                    i = lineEnd + 1;
+                    continue;
+                case '-':
+                    return ParserType.YAML;
+                default:
+                    break;
+            }
+
+            final int eq = indexOf(head, '=', i, lineEnd);
+            final int colon = indexOf(head, ':', i, lineEnd);
+
+            if (eq < colon) {
+                return ParserType.PROPERTIES;
+            }
+
+            if (colon < lineEnd && (colon + 1 == lineEnd
+                    || Character.isWhitespace(head[colon + 1]))) {
+                return ParserType.YAML;
+            }
+
+            return ParserType.PROPERTIES;
+        }
+
+        return ParserType.YAML;
+    }
+
+    /**
+     * Gets the index of the first {@code b} in {@code bytes} from
+     * {@code from}, inclusive, to {@code to}, exclusive.
+     *
+     * @return the index, or {@code to} if not found
+     */
+    private static int indexOf(byte[] bytes, char b, int from, int to)
+    {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+
+        return to;
+    }
+
+    /**
+     * Reads all of the given reader into a string.
+     *
+     * @param in the reader
+     *
+     * @return the read characters
+     *
+     * @throws IOException if the reader cannot be read
+     */
+    static String read(Reader in) throws IOException
+    {
+        final StringBuilder builder = new StringBuilder();
+        final char[] buf = new char[8192];
+        int read;
+
+        while ((read = in.read(buf)) != -1) {
+            builder.append(buf, 0, read);
+        }
+
+        return builder.toString();
     }
 
     /**
@@ -44,7 +258,178 @@ public abstract class Parser
      *
      * @throws ParseException if the given input cannot be parsed
      */
-    public abstract Object parse(String input);
+    public Object parse(String input)
+    {
+        try {
+            return parse(new StringReader(input));
+        }
+        catch (IOException e) {
+            // cannot happen when reading from a string
+            throw new ParseException(e);
+        }
+    }
+
+    /**
+     * Same as {@link #parse(String)}, however the input is read directly from
+     * the given reader. The reader is not closed.
+     *
+     * @param in the reader to parse
+     *
+     * @return an object that acts as a tree to hold the parsed input data
+     *
+     * @throws IOException if the reader cannot be read
+     * @throws ParseException if the read input cannot be parsed
+     */
+    public abstract Object parse(Reader in) throws IOException;
+
+    /**
+     * Same as {@link #parse(Reader)}, however the input is read directly from
+     * the given stream. Unless a parser's format defines its own encoding, the
+     * stream is decoded as UTF-8. The stream is not closed.
+     *
+     * @param in the stream to parse
+     *
+     * @return an object that acts as a tree to hold the parsed input data
+     *
+     * @throws IOException if the stream cannot be read
+     * @throws ParseException if the read input cannot be parsed
+     */
+    public Object parse(InputStream in) throws IOException
+    {
+        return parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Same as {@link #parse(InputStream)}, however the location of each node
+     * is also recorded into the given {@code locations}, where the format
+     * allows. Properties files do not record locations.
+     *
+     * @param in the stream to parse
+     * @param locations the locations to record into
+     *
+     * @return an object that acts as a tree to hold the parsed input data
+     *
+     * @throws IOException if the stream cannot be read
+     * @throws ParseException if the read input cannot be parsed
+     */
+    public Object parse(InputStream in, Locations locations) throws IOException
+    {
+        return parse(in);
+    }
+
+    /**
+     * Writes the given tree, as built by this parser, to the given stream in
+     * this parser's format. The tree is written as it is walked, without
+     * first being built up into a string. Comments and formatting of the
+     * original input are not kept. The stream is flushed, but not closed.
+     *
+     * @param tree the tree to write
+     * @param out the stream to write to
+     *
+     * @throws IOException if the stream cannot be written to
+     */
+    public abstract void write(Object tree, OutputStream out)
+            throws IOException;
+
+    /**
+     * Sets whether parsing deduplicates keys and short scalar values while
+     * the tree is built, so that equal ones share a single instance. This
+     * greatly reduces the retained size of trees that repeat the same keys
+     * and values many times, such as long lists of similar maps, at a small
+     * cost to parse time.
+     *
+     * @param interning whether to deduplicate
+     */
+    public void setInterning(boolean interning)
+    {
+        this.interning = interning;
+    }
+
+    /**
+     * Gets whether parsing deduplicates keys and short scalar values.
+     *
+     * @return {@code true} if parsing deduplicates
+     *
+     * @see #setInterning(boolean)
+     */
+    public boolean isInterning()
+    {
+        return interning;
+    }
+
+    /**
+     * Sets whether large documents are parsed in parallel. The document is
+     * read whole, split at its top-level map entries or list items, and the
+     * sections are parsed on the fork/join pool of the calling thread, or
+     * the common pool, then put together in order. The tree is the same as
+     * when parsed sequentially; a document that cannot be split, or fails to
+     * parse in some section, is parsed sequentially instead, so errors are
+     * still reported with their place in the whole document.
+     * <p>
+     * Only JSON and YAML are parsed in parallel; other parsers ignore this.
+     * Locations are not recorded for sections, so parsing with
+     * {@link #parse(InputStream, Locations)} is always sequential. With
+     * {@link #setInterning(boolean) interning}, equal values are only
+     * deduplicated within each section.
+     *
+     * @param parallel whether to parse in parallel
+     */
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Gets whether large documents are parsed in parallel.
+     *
+     * @return {@code true} if large documents are parsed in parallel
+     *
+     * @see #setParallel(boolean)
+     */
+    public boolean isParallel()
+    {
+        return parallel;
+    }
+
+    /**
+     * Sets whether parsing resolves include directives, replacing each with
+     * the tree of the file it names, as described by {@link Includes}. Only
+     * YAML and JSON support includes; other parsers ignore this.
+     *
+     * @param includes the includes to resolve with, which cache included
+     *                 files, or {@code null} to leave directives as they are
+     * @param directory the directory relative paths are resolved against,
+     *                  usually that of the parsed file
+     */
+    public void setIncludes(Includes includes, Path directory)
+    {
+        this.includes = includes;
+        this.includeDirectory = directory;
+    }
+
+    /**
+     * Gets the includes parsing resolves include directives with.
+     *
+     * @return the includes, or {@code null} if directives are not resolved
+     *
+     * @see #setIncludes(Includes, Path)
+     */
+    public Includes getIncludes()
+    {
+        return includes;
+    }
+
+    /**
+     * Gets the directory relative include paths are resolved against.
+     *
+     * @return the directory
+     *
+     * @see #setIncludes(Includes, Path)
+     */
+    Path getIncludeDirectory()
+    {
+        return includeDirectory;
+    }
 
     public abstract ParserType getType();
 }
@@ -1,21 +1,85 @@
 package me.mazeika.uconfig.parsing;
 
-import java.io.ByteArrayInputStream;
+import me.mazeika.uconfig.ParseException;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Map;
 import java.util.Properties;
 
 class PropertiesParser extends Parser
 {
     @Override
-    public Object parse(String input)
+    public Object parse(Reader in) throws IOException
+    {
+        final Properties properties = new Properties();
+
+        try {
+            properties.load(in);
+        }
+        catch (IllegalArgumentException e) {
+            // a malformed unicode escape; properties do not tell where
+            throw new ParseException(e.getMessage(), e);
+        }
+
+        return intern(properties);
+    }
+
+    @Override
+    public Object parse(InputStream in) throws IOException
     {
-        Properties properties = new Properties();
+        final Properties properties = new Properties();
 
         try {
-            properties.load(new ByteArrayInputStream(input.getBytes()));
+            properties.load(in);
+        }
+        catch (IllegalArgumentException e) {
+            // a malformed unicode escape; properties do not tell where
+            throw new ParseException(e.getMessage(), e);
+        }
+
+        return intern(properties);
+    }
+
+    /**
+     * Writes the given properties. Values that are not strings, such as those
+     * converted by a schema, are written as strings. Characters outside of
+     * ISO 8859-1 are escaped, as they are expected to be when read back.
+     */
+    @Override
+    public void write(Object tree, OutputStream out) throws IOException
+    {
+        final Properties properties = new Properties();
+
+        for (Map.Entry<?, ?> e : ((Map<?, ?>) tree).entrySet()) {
+            final Object value = e.getValue();
+
+            properties.put(String.valueOf(e.getKey()), value instanceof Enum
+                    ? ((Enum<?>) value).name() : String.valueOf(value));
         }
-        catch (IOException e) {
-            throw new RuntimeException(e);
+
+        properties.store(out, null);
+        out.flush();
+    }
+
+    /**
+     * Interns the values of the given properties, if enabled. Keys are
+     * already unique.
+     *
+     * @param properties the loaded properties
+     *
+     * @return the properties
+     */
+    private Properties intern(Properties properties)
+    {
+        if (isInterning()) {
+            final Interner interner = new Interner();
+
+            for (Map.Entry<Object, Object> e : properties.entrySet()) {
+                e.setValue(interner.intern(e.getValue()));
+            }
         }
 
         return properties;
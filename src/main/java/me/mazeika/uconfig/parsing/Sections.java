@@ -0,0 +1,272 @@
+package me.mazeika.uconfig.parsing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The text of a large JSON or YAML document split into runs of its
+ * top-level map entries or list items, so that each run can be parsed by
+ * itself. Splitting only scans for structure, tracking nesting and quoting
+ * for JSON and looking at unindented lines for YAML, without parsing
+ * anything.
+ * <p>
+ * The scan is cheap, but not a full parser. YAML with directives or several
+ * documents is not split, nor is YAML with an unindented line starting with
+ * an anchor, alias, tag or flow collection. A document that was split
+ * wrongly, such as by an alias to an anchor in another section, is expected
+ * to fail to parse in some section, so that the caller parses it whole
+ * instead.
+ */
+final class Sections
+{
+    private final boolean list;
+    private final List<String> sections;
+
+    private Sections(boolean list, List<String> sections)
+    {
+        this.list = list;
+        this.sections = sections;
+    }
+
+    /**
+     * Splits the given document into sections of about the given size.
+     *
+     * @param text the document
+     * @param type the document's type, either JSON or YAML
+     * @param size the number of characters after which a section is ended at
+     *             the next top-level entry or item
+     *
+     * @return the sections, or {@code null} if the document cannot be split
+     *         into more than one
+     */
+    static Sections split(String text, ParserType type, int size)
+    {
+        return type == ParserType.JSON ? json(text, size) : yaml(text, size);
+    }
+
+    /**
+     * Gets whether the document is a list, rather than a map.
+     *
+     * @return {@code true} if each section holds list items
+     */
+    boolean isList()
+    {
+        return list;
+    }
+
+    /**
+     * Gets the sections, in order. Each is a document of its own, holding a
+     * map or list of some of the top-level entries or items.
+     *
+     * @return the sections
+     */
+    List<String> get()
+    {
+        return Collections.unmodifiableList(sections);
+    }
+
+    private static Sections json(String text, int size)
+    {
+        final int first = skipWhitespace(text, 0);
+
+        if (first == text.length()
+                || (text.charAt(first) != '{' && text.charAt(first) != '[')) {
+            return null;
+        }
+
+        final char open = text.charAt(first);
+        final char close = open == '{' ? '}' : ']';
+        final List<String> sections = new ArrayList<>();
+        int start = first + 1;
+        int depth = 0;
+
+        for (int i = first; i < text.length(); i++) {
+            switch (text.charAt(i)) {
+                case '"':
+                    i = endOfQuoted(text, i, '"');
+                    break;
+                case '\'':
+                    // YAML's flow style, which is accepted as JSON
+                    i = endOfQuoted(text, i, '\'');
+                    break;
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    if (--depth > 0) {
+                        break;
+                    }
+
+                    if (skipWhitespace(text, i + 1) != text.length()) {
+                        return null;
+                    }
+
+                    sections.add(open + text.substring(start, i) + close);
+
+                    return sections.size() > 1
+                            ? new Sections(open == '[', sections) : null;
+                case ',':
+                    if (depth == 1 && i - start >= size) {
+                        sections.add(open + text.substring(start, i) + close);
+                        start = i + 1;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // unbalanced, so let the parser report it
+        return null;
+    }
+
+    /**
+     * Gets the index of the quote closing the string opened at the given
+     * index, or the end of the text if it is not closed.
+     */
+    private static int endOfQuoted(String text, int open, char quote)
+    {
+        for (int i = open + 1; i < text.length(); i++) {
+            final char c = text.charAt(i);
+
+            if (c == '\\' && quote == '"') {
+                i++;
+            }
+            else if (c == quote) {
+                return i;
+            }
+        }
+
+        return text.length();
+    }
+
+    private static int skipWhitespace(String text, int from)
+    {
+        int i = from;
+
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    /**
+     * Splits a block map or list at its unindented lines, each of which
+     * starts a top-level entry or item.
+     */
+    private static Sections yaml(String text, int size)
+    {
+        final List<String> sections = new ArrayList<>();
+        Boolean list = null;
+        int start = -1;
+        int line = 0;
+
+        while (line < text.length()) {
+            int end = text.indexOf('\n', line);
+
+            if (end < 0) {
+                end = text.length();
+            }
+
+            if (end > line) {
+                final char c = text.charAt(line);
+
+                switch (c) {
+                    case ' ':
+                    case '\t':
+                    case '\r':
+                    case '#':
+                        // inside an entry, blank, or a comment
+                        break;
+                    case '%':
+                    case '!':
+                    case '&':
+                    case '*':
+                    case '?':
+                    case '{':
+                    case '[':
+                    case '|':
+                    case '>':
+                        return null;
+                    default:
+                        if (isMarker(text, line, end)) {
+                            // a leading document start is harmless
+                            if (start >= 0 || ! isBare(text, line + 3, end)
+                                    || text.charAt(line) != '-') {
+                                return null;
+                            }
+
+                            break;
+                        }
+
+                        final boolean item = c == '-'
+                                && (line + 1 == end
+                                || isBlank(text.charAt(line + 1)));
+
+                        if (list == null) {
+                            list = item;
+                        }
+                        else if (list != item) {
+                            return null;
+                        }
+
+                        if (start < 0) {
+                            start = line;
+                        }
+                        else if (line - start >= size) {
+                            sections.add(text.substring(start, line));
+                            start = line;
+                        }
+                }
+            }
+
+            line = end + 1;
+        }
+
+        if (start < 0) {
+            return null;
+        }
+
+        sections.add(text.substring(start));
+
+        return sections.size() > 1 ? new Sections(list, sections) : null;
+    }
+
+    /**
+     * Gets whether the given line is a document start or end marker.
+     */
+    private static boolean isMarker(String text, int line, int end)
+    {
+        return (text.startsWith("---", line) || text.startsWith("...", line))
+                && (line + 3 == end || isBlank(text.charAt(line + 3)));
+    }
+
+    /**
+     * Gets whether the given part of a line holds nothing but a comment.
+     */
+    private static boolean isBare(String text, int from, int end)
+    {
+        for (int i = from; i < end; i++) {
+            final char c = text.charAt(i);
+
+            if (c == '#') {
+                return true;
+            }
+
+            if (! isBlank(c)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isBlank(char c)
+    {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+}
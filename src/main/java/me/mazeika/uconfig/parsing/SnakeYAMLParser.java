@@ -0,0 +1,161 @@
+package me.mazeika.uconfig.parsing;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A parser that loads its input with SnakeYAML, and so can resolve include
+ * directives in it and parse large documents in parallel.
+ */
+abstract class SnakeYAMLParser extends Parser
+{
+    /**
+     * Sections are no smaller than this many characters, so that parsing
+     * each one outweighs handing it to another thread.
+     */
+    private static final int MIN_SECTION = 256 * 1024;
+
+    @Override
+    public Object parse(Reader in) throws IOException
+    {
+        if (isParallel()) {
+            final String text = read(in);
+            final ForkJoinPool pool = ForkJoinTask.inForkJoinPool()
+                    ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+
+            return resolve(parseInParallel(text, Math.max(MIN_SECTION,
+                    text.length() / (pool.getParallelism() * 4))));
+        }
+
+        return resolve(Yamls.load(this, null, yaml -> load(yaml, in)));
+    }
+
+    @Override
+    public Object parse(InputStream in) throws IOException
+    {
+        if (isParallel()) {
+            return parse(new UnicodeReader(in));
+        }
+
+        return parse(in, null);
+    }
+
+    /**
+     * Included files do not record locations, so only the nodes of the
+     * including input are located.
+     */
+    @Override
+    public Object parse(InputStream in, Locations locations)
+    {
+        // as Yaml#load(InputStream) does, to honor byte order marks
+        final Reader reader = new UnicodeReader(in);
+
+        return resolve(Yamls.load(this, locations,
+                yaml -> load(yaml, reader)));
+    }
+
+    /**
+     * Parses the given document by splitting it into sections of about the
+     * given size, which are parsed in parallel. Include directives are left
+     * unresolved.
+     *
+     * @param text the document
+     * @param size the size of a section, in characters
+     *
+     * @return the tree, as if parsed sequentially
+     */
+    Object parseInParallel(String text, int size)
+    {
+        final Sections sections = Sections.split(text, getType(), size);
+
+        if (sections == null) {
+            return Yamls.load(this, null,
+                    yaml -> load(yaml, new StringReader(text)));
+        }
+
+        final List<ForkJoinTask<Object>> tasks = new ArrayList<>();
+
+        for (String section : sections.get()) {
+            tasks.add(ForkJoinTask.adapt(() -> Yamls.load(this, null,
+                    yaml -> load(yaml, new StringReader(section)))).fork());
+        }
+
+        final Map<Object, Object> map = new LinkedHashMap<>();
+        final List<Object> list = new ArrayList<>();
+        boolean split = true;
+
+        for (ForkJoinTask<Object> task : tasks) {
+            final Object tree;
+
+            try {
+                tree = task.join();
+            }
+            catch (RuntimeException e) {
+                // split where it should not have been, or malformed
+                split = false;
+                continue;
+            }
+
+            if (sections.isList() && tree instanceof List) {
+                list.addAll((List<?>) tree);
+            }
+            else if (! sections.isList() && tree instanceof Map) {
+                map.putAll((Map<?, ?>) tree);
+            }
+            else {
+                split = false;
+            }
+        }
+
+        if (! split) {
+            // reports errors with their place in the whole document
+            return Yamls.load(this, null,
+                    yaml -> load(yaml, new StringReader(text)));
+        }
+
+        return sections.isList() ? list : map;
+    }
+
+    /**
+     * Same as {@link #parse(Reader)}, however include directives are left in
+     * the tree unresolved.
+     *
+     * @param in the reader to parse
+     *
+     * @return the tree, possibly holding {@link Includes.Directive}s and
+     *         {@code $include} maps
+     */
+    Object parseUnresolved(Reader in)
+    {
+        return Yamls.load(this, null, yaml -> load(yaml, in));
+    }
+
+    /**
+     * Loads the input with the given Yaml instance.
+     *
+     * @param yaml the Yaml instance
+     * @param in the input
+     *
+     * @return the loaded tree
+     */
+    abstract Object load(Yaml yaml, Reader in);
+
+    private Object resolve(Object tree)
+    {
+        final Includes includes = getIncludes();
+
+        return includes == null ? tree
+                : includes.resolve(tree, getIncludeDirectory(), isInterning());
+    }
+}
@@ -0,0 +1,368 @@
+package me.mazeika.uconfig.parsing;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An element of a parsed XML tree. Its attributes, its text and its child
+ * elements are kept apart, so none of them can collide with the others.
+ * Children that share a name are grouped, in order, into a {@link List};
+ * other children are stored as elements directly.
+ * <p>
+ * So that code walking parsed trees can treat all formats alike, an element
+ * is also a {@link Map} of its children and attributes, where a child hides
+ * an attribute of the same name. Prefixing a name with {@code '@'} always
+ * gets the attribute. The text is not part of the map.
+ */
+public final class XMLElement extends AbstractMap<String, Object>
+{
+    /**
+     * The prefix that makes {@link #get(Object)} look up an attribute only.
+     */
+    public static final String ATTRIBUTE_PREFIX = "@";
+
+    // most elements have no attributes or children, so these are only
+    // allocated when needed
+    private Map<String, Object> children = Collections.emptyMap();
+    private Map<String, Object> attributes = Collections.emptyMap();
+    private Object text;
+
+    /**
+     * Gets the text of this element, if it has any that is not whitespace.
+     * Numbers and booleans are typed as such.
+     *
+     * @return the text, or {@code null} if none
+     */
+    public Object getText()
+    {
+        return text;
+    }
+
+    /**
+     * Sets the text of this element.
+     *
+     * @param text the text, or {@code null} for none
+     */
+    public void setText(Object text)
+    {
+        this.text = text;
+    }
+
+    /**
+     * Gets if this element has no attributes, text or children, as in
+     * {@code <element/>}.
+     *
+     * @return {@code true} if this element is blank
+     */
+    public boolean isBlank()
+    {
+        return text == null && children.isEmpty() && attributes.isEmpty();
+    }
+
+    /**
+     * Gets the children of this element, by name. Each value is either an
+     * element, or a list of the elements sharing the name. A child that held
+     * nothing but the text {@code null} is a {@code null}.
+     *
+     * @return a read-only view of the children
+     */
+    public Map<String, Object> getChildren()
+    {
+        return Collections.unmodifiableMap(children);
+    }
+
+    /**
+     * Gets the attributes of this element, by name.
+     *
+     * @return a read-only view of the attributes
+     */
+    public Map<String, Object> getAttributes()
+    {
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * Adds a child element, grouping it with any earlier children of the same
+     * name.
+     *
+     * @param name the child's name
+     * @param child the child
+     */
+    @SuppressWarnings("unchecked")
+    void addChild(String name, XMLElement child)
+    {
+        if (children.isEmpty()) {
+            children = new LinkedHashMap<>(4);
+        }
+
+        final Object existing = children.get(name);
+
+        if (existing == null) {
+            children.put(name, child);
+        }
+        else if (existing instanceof List) {
+            ((List<Object>) existing).add(child);
+        }
+        else {
+            final List<Object> group = new ArrayList<>(4);
+
+            group.add(existing);
+            group.add(child);
+            children.put(name, group);
+        }
+    }
+
+    /**
+     * Replaces the child of the given name that was added last with
+     * {@code null}, for a child that held nothing but the text
+     * {@code null}, so that it reads as missing.
+     *
+     * @param name the child's name
+     */
+    @SuppressWarnings("unchecked")
+    void clearLastChild(String name)
+    {
+        final Object existing = children.get(name);
+
+        if (existing instanceof List) {
+            final List<Object> group = (List<Object>) existing;
+
+            group.set(group.size() - 1, null);
+        }
+        else {
+            children.put(name, null);
+        }
+    }
+
+    /**
+     * Sets an attribute.
+     *
+     * @param name the attribute's name
+     * @param value the attribute's value
+     */
+    void putAttribute(String name, Object value)
+    {
+        if (attributes.isEmpty()) {
+            attributes = new LinkedHashMap<>(4);
+        }
+
+        attributes.put(name, value);
+    }
+
+    /**
+     * Creates a shallow copy of this element. The copy's children, attributes
+     * and text can be changed without affecting this element, but the
+     * children themselves are shared.
+     *
+     * @return the copy
+     */
+    public XMLElement copy()
+    {
+        final XMLElement copy = new XMLElement();
+
+        if (! children.isEmpty()) {
+            copy.children = new LinkedHashMap<>(children);
+        }
+
+        if (! attributes.isEmpty()) {
+            copy.attributes = new LinkedHashMap<>(attributes);
+        }
+
+        copy.text = text;
+
+        return copy;
+    }
+
+    /**
+     * Sets the child of the given name, replacing any children of that name.
+     * The child is either an element, a list of elements, or a value, which
+     * acts like an element holding only that value as its text.
+     *
+     * @param name the child's name
+     * @param child the child
+     */
+    public void setChild(String name, Object child)
+    {
+        if (children.isEmpty()) {
+            children = new LinkedHashMap<>(4);
+        }
+
+        children.put(name, child);
+    }
+
+    /**
+     * Removes the child, or else the attribute, of the given name. Prefixing
+     * the name with {@link #ATTRIBUTE_PREFIX} only removes the attribute.
+     */
+    @Override
+    public Object remove(Object key)
+    {
+        if (key instanceof String
+                && ((String) key).startsWith(ATTRIBUTE_PREFIX)) {
+            return attributes.isEmpty() ? null
+                    : attributes.remove(((String) key).substring(1));
+        }
+
+        if (children.containsKey(key)) {
+            return children.remove(key);
+        }
+
+        return attributes.isEmpty() ? null : attributes.remove(key);
+    }
+
+    @Override
+    public Object get(Object key)
+    {
+        if (key instanceof String
+                && ((String) key).startsWith(ATTRIBUTE_PREFIX)) {
+            return attributes.get(((String) key).substring(1));
+        }
+
+        final Object child = children.get(key);
+
+        return child != null ? child : attributes.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * Replaces the child, or else the attribute, of the given name. New names
+     * are added as attributes.
+     */
+    @Override
+    public Object put(String key, Object value)
+    {
+        if (key.startsWith(ATTRIBUTE_PREFIX)) {
+            final Object previous = attributes.get(key.substring(1));
+
+            putAttribute(key.substring(1), value);
+
+            return previous;
+        }
+
+        if (children.containsKey(key)) {
+            return children.put(key, value);
+        }
+
+        final Object previous = attributes.get(key);
+
+        putAttribute(key, value);
+
+        return previous;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet()
+    {
+        return new AbstractSet<Entry<String, Object>>()
+        {
+            @Override
+            public Iterator<Entry<String, Object>> iterator()
+            {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size()
+            {
+                int size = children.size();
+
+                for (String name : attributes.keySet()) {
+                    if (! children.containsKey(name)) {
+                        size++;
+                    }
+                }
+
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+
+        if (! (o instanceof XMLElement)) {
+            return super.equals(o);
+        }
+
+        final XMLElement other = (XMLElement) o;
+
+        return children.equals(other.children)
+                && attributes.equals(other.attributes)
+                && (text == null ? other.text == null
+                : text.equals(other.text));
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return super.hashCode() ^ (text == null ? 0 : text.hashCode());
+    }
+
+    /**
+     * Iterates over the children, then over the attributes not hidden by a
+     * child. Setting an entry's value writes it through to the element.
+     */
+    private class EntryIterator implements Iterator<Entry<String, Object>>
+    {
+        private final Iterator<Entry<String, Object>> childIt =
+                children.entrySet().iterator();
+        private final Iterator<Entry<String, Object>> attributeIt =
+                attributes.entrySet().iterator();
+        private Entry<String, Object> next;
+
+        @Override
+        public boolean hasNext()
+        {
+            if (next != null) {
+                return true;
+            }
+
+            if (childIt.hasNext()) {
+                next = childIt.next();
+                return true;
+            }
+
+            while (attributeIt.hasNext()) {
+                final Entry<String, Object> attribute = attributeIt.next();
+
+                if (! children.containsKey(attribute.getKey())) {
+                    next = attribute;
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public Entry<String, Object> next()
+        {
+            if (! hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final Entry<String, Object> entry = next;
+
+            next = null;
+
+            return entry;
+        }
+    }
+}
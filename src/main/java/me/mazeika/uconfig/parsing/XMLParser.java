@@ -1,18 +1,368 @@
 package me.mazeika.uconfig.parsing;
 
-import org.json.XML;
-import org.yaml.snakeyaml.Yaml;
+import me.mazeika.uconfig.ParseException;
 
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses XML into a tree of {@link XMLElement}s, streaming it with StAX. The
+ * root of the tree is an element holding the document element as its only
+ * child, so keys start with the document element's name.
+ */
 class XMLParser extends Parser
 {
-    private static final Yaml yaml = new Yaml();
+    private static final XMLInputFactory factory;
+    private static final XMLOutputFactory outputFactory =
+            XMLOutputFactory.newInstance();
+
+    static {
+        factory = XMLInputFactory.newInstance();
+        // configs have no business resolving external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(
+                XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    @Override
+    public Object parse(Reader in)
+    {
+        try {
+            return parse(factory.createXMLStreamReader(in), null);
+        }
+        catch (XMLStreamException e) {
+            throw error(e);
+        }
+    }
+
+    @Override
+    public Object parse(InputStream in)
+    {
+        return parse(in, null);
+    }
 
     @Override
-    public Object parse(String input)
+    public Object parse(InputStream in, Locations locations)
     {
-        final String json = XML.toJSONObject(input).toString();
+        try {
+            // let the prolog decide the encoding
+            return parse(factory.createXMLStreamReader(in), locations);
+        }
+        catch (XMLStreamException e) {
+            throw error(e);
+        }
+    }
+
+    private static ParseException error(XMLStreamException e)
+    {
+        final Location location = e.getLocation();
+
+        if (location == null || location.getLineNumber() < 0) {
+            return new ParseException(e.getMessage(), e);
+        }
+
+        // the message repeats the location; leave it out
+        String message = e.getMessage();
+        final int start = message.indexOf("Message: ");
+
+        if (start >= 0) {
+            message = message.substring(start + "Message: ".length());
+        }
+
+        return new ParseException(message, location.getLineNumber(),
+                location.getColumnNumber(), e);
+    }
+
+    private Object parse(XMLStreamReader reader, Locations locations)
+            throws XMLStreamException
+    {
+        final Interner interner = isInterning() ? new Interner() : null;
+        final XMLElement document = new XMLElement();
+        final Deque<XMLElement> elements = new ArrayDeque<>();
+        final Deque<StringBuilder> texts = new ArrayDeque<>();
+
+        elements.push(document);
+
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT: {
+                        final XMLElement element = new XMLElement();
+
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            element.putAttribute(
+                                    intern(interner,
+                                            reader.getAttributeLocalName(i)),
+                                    intern(interner,
+                                            toValue(reader
+                                                    .getAttributeValue(i))));
+                        }
+
+                        final String name =
+                                intern(interner, reader.getLocalName());
+
+                        elements.peek().addChild(name, element);
+
+                        if (locations != null) {
+                            locate(locations, elements.peek(), name, element,
+                                    reader.getLocation());
+                        }
+
+                        elements.push(element);
+                        texts.push(new StringBuilder());
+                        break;
+                    }
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        if (! texts.isEmpty()) {
+                            texts.peek().append(reader.getTextCharacters(),
+                                    reader.getTextStart(),
+                                    reader.getTextLength());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT: {
+                        final String text = texts.pop().toString().trim();
+                        final XMLElement element = elements.pop();
+
+                        if (text.isEmpty()) {
+                            break;
+                        }
+
+                        final Object value = toValue(text);
+
+                        if (value == null && element.isBlank()) {
+                            // missing, as a null is in the other formats
+                            elements.peek().clearLastChild(
+                                    reader.getLocalName());
+                        }
+                        else {
+                            element.setText(intern(interner, value));
+                        }
+                        break;
+                    }
+                    default:
+                        break;
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        return document;
+    }
+
+    /**
+     * Writes the given tree as UTF-8 XML, indented by two spaces. Values set
+     * as children, rather than as elements, are written as elements holding
+     * only the value as text.
+     */
+    @Override
+    public void write(Object tree, OutputStream out) throws IOException
+    {
+        try {
+            final XMLStreamWriter writer = outputFactory.createXMLStreamWriter(
+                    out, StandardCharsets.UTF_8.name());
+
+            writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+
+            for (Map.Entry<String, Object> child
+                    : ((XMLElement) tree).getChildren().entrySet()) {
+                writeChild(writer, child.getKey(), child.getValue(), 0);
+            }
+
+            writer.writeCharacters("\n");
+            writer.writeEndDocument();
+            writer.close();
+            out.flush();
+        }
+        catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void writeChild(XMLStreamWriter writer, String name,
+            Object child, int depth) throws XMLStreamException
+    {
+        if (child instanceof List) {
+            for (Object item : (List<?>) child) {
+                writeChild(writer, name, item, depth);
+            }
+
+            return;
+        }
+
+        writeIndent(writer, depth);
+
+        if (! (child instanceof XMLElement)) {
+            writer.writeStartElement(name);
+            writer.writeCharacters(String.valueOf(child));
+            writer.writeEndElement();
+            return;
+        }
+
+        final XMLElement element = (XMLElement) child;
+
+        if (element.getChildren().isEmpty() && element.getText() == null) {
+            writer.writeEmptyElement(name);
+            writeAttributes(writer, element);
+            return;
+        }
+
+        writer.writeStartElement(name);
+        writeAttributes(writer, element);
+
+        if (element.getText() != null) {
+            writer.writeCharacters(element.getText().toString());
+        }
+
+        if (! element.getChildren().isEmpty()) {
+            for (Map.Entry<String, Object> grandchild
+                    : element.getChildren().entrySet()) {
+                writeChild(writer, grandchild.getKey(), grandchild.getValue(),
+                        depth + 1);
+            }
+
+            writeIndent(writer, depth);
+        }
+
+        writer.writeEndElement();
+    }
+
+    private static void writeAttributes(XMLStreamWriter writer,
+            XMLElement element) throws XMLStreamException
+    {
+        for (Map.Entry<String, Object> attribute
+                : element.getAttributes().entrySet()) {
+            writer.writeAttribute(attribute.getKey(),
+                    String.valueOf(attribute.getValue()));
+        }
+    }
+
+    private static void writeIndent(XMLStreamWriter writer, int depth)
+            throws XMLStreamException
+    {
+        final StringBuilder indent = new StringBuilder(1 + 2 * depth)
+                .append('\n');
+
+        for (int i = 0; i < depth; i++) {
+            indent.append("  ");
+        }
+
+        writer.writeCharacters(indent.toString());
+    }
+
+    /**
+     * Records the location of a freshly added child element and of its
+     * attributes. Children sharing a name are located by their index in the
+     * list grouping them.
+     */
+    private static void locate(Locations locations, XMLElement parent,
+                               String name, XMLElement child,
+                               Location location)
+    {
+        final int line = location.getLineNumber();
+        final int column = location.getColumnNumber();
+        final Object group = parent.getChildren().get(name);
+
+        if (group instanceof List) {
+            final List<?> list = (List<?>) group;
+
+            if (list.size() == 2) {
+                // the first child was located by name before being grouped
+                locations.copy(parent, name, list, 0);
+            }
+
+            locations.put(list, list.size() - 1, line, column);
+        }
+        else {
+            locations.put(parent, name, line, column);
+        }
+
+        for (String attribute : child.getAttributes().keySet()) {
+            locations.put(child, XMLElement.ATTRIBUTE_PREFIX + attribute,
+                    line, column);
+        }
+    }
+
+    private static String intern(Interner interner, String name)
+    {
+        return interner == null ? name : (String) interner.intern(name);
+    }
+
+    private static Object intern(Interner interner, Object value)
+    {
+        return interner == null ? value : interner.intern(value);
+    }
+
+    /**
+     * Types the given text as a boolean or a number, if it is one, so that
+     * XML values read the same as they do from the other formats. The text
+     * {@code null} is a null, as in JSON.
+     *
+     * @param text the trimmed text
+     *
+     * @return the typed value, or the text itself
+     */
+    static Object toValue(String text)
+    {
+        if (text.equalsIgnoreCase("null")) {
+            return null;
+        }
+
+        if (text.equalsIgnoreCase("true")) {
+            return Boolean.TRUE;
+        }
+
+        if (text.equalsIgnoreCase("false")) {
+            return Boolean.FALSE;
+        }
+
+        if (text.isEmpty()) {
+            return text;
+        }
+
+        final char first = text.charAt(0);
+
+        if ((first < '0' || first > '9') && first != '-') {
+            return text;
+        }
+
+        try {
+            if (text.indexOf('.') >= 0 || text.indexOf('e') >= 0
+                    || text.indexOf('E') >= 0) {
+                final Double d = Double.valueOf(text);
+
+                return d.isInfinite() || d.isNaN() ? text : d;
+            }
+
+            final long l = Long.parseLong(text);
+
+            // keep text like "007" or "-0" as it is
+            if (! Long.toString(l).equals(text)) {
+                return text;
+            }
 
-        return yaml.load(json);
+            return l == (int) l ? (Object) (int) l : (Object) l;
+        }
+        catch (NumberFormatException e) {
+            return text;
+        }
     }
 
     @Override
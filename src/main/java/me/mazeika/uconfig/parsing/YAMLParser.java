@@ -1,15 +1,78 @@
 package me.mazeika.uconfig.parsing;
 
+import me.mazeika.uconfig.ParseException;
 import org.yaml.snakeyaml.Yaml;
 
-class YAMLParser extends Parser
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+class YAMLParser extends SnakeYAMLParser
 {
-    private static final Yaml yaml = new Yaml();
+    /**
+     * Loads every document of the input. Empty documents are skipped, and
+     * documents that are maps are merged into one, with later documents
+     * overriding the keys of earlier ones, and maps under the same key merged
+     * in turn. A single document is returned as it is.
+     *
+     * @throws ParseException if there are several documents and one of them
+     *                        is not a map
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    Object load(Yaml yaml, Reader in)
+    {
+        Object tree = null;
+        int documents = 0;
+
+        for (Object document : yaml.loadAll(in)) {
+            documents++;
+
+            if (tree == null) {
+                tree = document;
+            }
+            else if (document != null) {
+                if (! (tree instanceof Map) || ! (document instanceof Map)) {
+                    throw new ParseException("Document " + documents
+                            + " cannot be merged, as only documents that "
+                            + "are maps can be");
+                }
+
+                merge((Map<Object, Object>) tree, (Map<?, ?>) document);
+            }
+        }
+
+        return tree;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void merge(Map<Object, Object> into, Map<?, ?> from)
+    {
+        for (Map.Entry<?, ?> e : from.entrySet()) {
+            final Object existing = into.get(e.getKey());
+
+            if (existing instanceof Map && e.getValue() instanceof Map) {
+                merge((Map<Object, Object>) existing, (Map<?, ?>) e.getValue());
+            }
+            else {
+                into.put(e.getKey(), e.getValue());
+            }
+        }
+    }
 
     @Override
-    public Object parse(String input)
+    public void write(Object tree, OutputStream out) throws IOException
     {
-        return yaml.load(input);
+        final Writer writer = new BufferedWriter(
+                new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        Yamls.dumper().dump(tree, writer);
+        writer.flush();
     }
 
     @Override
@@ -0,0 +1,214 @@
+package me.mazeika.uconfig.parsing;
+
+import me.mazeika.uconfig.ParseException;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.AbstractConstruct;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.MarkedYAMLException;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.representer.Represent;
+import org.yaml.snakeyaml.representer.Representer;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Provides the SnakeYAML instances used by the parsers that build on it.
+ */
+final class Yamls
+{
+    // Yaml instances are not thread-safe
+    private static final ThreadLocal<Yaml> yaml =
+            ThreadLocal.withInitial(Yaml::new);
+
+    private Yamls()
+    {
+    }
+
+    /**
+     * Gets a Yaml instance set up for a single load by the given parser. It
+     * may only be used by the calling thread.
+     *
+     * @param parser the parser loading with it
+     * @param locations the locations to record into, or {@code null} to not
+     *                  record them
+     *
+     * @return the Yaml instance
+     */
+    static Yaml get(Parser parser, Locations locations)
+    {
+        if (parser.isInterning() || locations != null
+                || parser.getIncludes() != null) {
+            return new Yaml(new TreeConstructor(
+                    parser.isInterning() ? new Interner() : null, locations,
+                    parser.getIncludes() != null));
+        }
+
+        return yaml.get();
+    }
+
+    /**
+     * Loads a single document with the Yaml instance for the given parser,
+     * reporting syntax errors with their place in the input.
+     *
+     * @param parser the parser loading
+     * @param locations the locations to record into, or {@code null} to not
+     *                  record them
+     * @param load loads with the given Yaml instance
+     *
+     * @return the loaded tree
+     *
+     * @throws ParseException if the input cannot be parsed
+     */
+    static Object load(Parser parser, Locations locations,
+                       Function<Yaml, Object> load)
+    {
+        try {
+            return load.apply(get(parser, locations));
+        }
+        catch (MarkedYAMLException e) {
+            final Mark mark = e.getProblemMark() != null
+                    ? e.getProblemMark() : e.getContextMark();
+            final String message = e.getContext() == null ? e.getProblem()
+                    : e.getContext() + ", " + e.getProblem();
+
+            if (mark == null) {
+                throw new ParseException(message, e);
+            }
+
+            throw new ParseException(message, mark.getLine() + 1,
+                    mark.getColumn() + 1, e);
+        }
+        catch (YAMLException e) {
+            throw new ParseException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates a Yaml instance that dumps trees in block style, representing
+     * values SnakeYAML has no tag for, such as durations and enum constants,
+     * as plain strings.
+     *
+     * @return the Yaml instance
+     */
+    static Yaml dumper()
+    {
+        final DumperOptions options = new DumperOptions();
+
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+
+        return new Yaml(new ScalarRepresenter(), options);
+    }
+
+    private static class ScalarRepresenter extends Representer
+    {
+        ScalarRepresenter()
+        {
+            final Represent toString = data -> representScalar(Tag.STR,
+                    data.toString());
+
+            representers.put(Duration.class, toString);
+            multiRepresenters.put(Enum.class, data -> representScalar(Tag.STR,
+                    ((Enum<?>) data).name()));
+        }
+    }
+
+    /**
+     * A constructor that interns every scalar, including keys, and records
+     * the location of every node, as the tree is constructed. Either may be
+     * left out. If asked to, it also constructs nodes tagged
+     * {@code !include} as directives for {@link Includes} to resolve.
+     */
+    private static class TreeConstructor extends Constructor
+    {
+        private static final Tag INCLUDE_TAG = new Tag("!include");
+
+        private final Interner interner;
+        private final Locations locations;
+
+        TreeConstructor(Interner interner, Locations locations,
+                        boolean including)
+        {
+            this.interner = interner;
+            this.locations = locations;
+
+            if (including) {
+                yamlConstructors.put(INCLUDE_TAG, new AbstractConstruct()
+                {
+                    @Override
+                    public Object construct(Node node)
+                    {
+                        if (! (node instanceof ScalarNode)) {
+                            throw new YAMLException("!include takes a path, "
+                                    + "on line "
+                                    + (node.getStartMark().getLine() + 1));
+                        }
+
+                        return new Includes.Directive(
+                                (String) constructScalar((ScalarNode) node));
+                    }
+                });
+            }
+        }
+
+        @Override
+        protected Object constructObject(Node node)
+        {
+            final Object object = super.constructObject(node);
+
+            return interner == null ? object : interner.intern(object);
+        }
+
+        @Override
+        protected void constructMapping2ndStep(MappingNode node,
+                                               Map<Object, Object> mapping)
+        {
+            super.constructMapping2ndStep(node, mapping);
+
+            if (locations != null) {
+                for (NodeTuple tuple : node.getValue()) {
+                    // already constructed, so this only looks it up
+                    final Object key = constructObject(tuple.getKeyNode());
+
+                    put(mapping, key, tuple.getKeyNode());
+                }
+            }
+        }
+
+        @Override
+        protected void constructSequenceStep2(SequenceNode node,
+                                              Collection<Object> collection)
+        {
+            super.constructSequenceStep2(node, collection);
+
+            if (locations != null) {
+                final List<Node> items = node.getValue();
+
+                for (int i = 0; i < items.size(); i++) {
+                    put(collection, i, items.get(i));
+                }
+            }
+        }
+
+        private void put(Object parent, Object key, Node node)
+        {
+            final Mark mark = node.getStartMark();
+
+            if (mark != null) {
+                locations.put(parent, key, mark.getLine() + 1,
+                        mark.getColumn() + 1);
+            }
+        }
+    }
+}
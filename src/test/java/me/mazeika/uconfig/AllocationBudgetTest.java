@@ -0,0 +1,68 @@
+package me.mazeika.uconfig;
+
+import org.junit.Test;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Fails if a steady-state read of any type allocates more than the budget,
+ * in bytes per read, as measured by running {@link ReadBenchmark} with the
+ * GC profiler. Takes a few minutes, so it is only run by the
+ * {@code allocation-budget} Maven profile, which also sets the budget.
+ */
+public class AllocationBudgetTest
+{
+    private static final String NORM_SUFFIX = "gc.alloc.rate.norm";
+
+    @Test
+    public void testReadsWithinBudget() throws RunnerException
+    {
+        final double budget = Double.parseDouble(
+                System.getProperty("uconfig.allocation.budget", "8"));
+        final List<String> overBudget = new ArrayList<>();
+
+        for (RunResult result : new Runner(new OptionsBuilder()
+                .include(ReadBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run()) {
+            final BenchmarkParams params = result.getParams();
+            final double bytesPerOp = bytesPerOp(result);
+
+            if (bytesPerOp > budget) {
+                overBudget.add(String.format("%s[%s]: %.1f bytes/op",
+                        params.getBenchmark(), params.getParam("type"),
+                        bytesPerOp));
+            }
+        }
+
+        assertThat("Reads over the budget of " + budget + " bytes/op",
+                overBudget, is(Collections.<String>emptyList()));
+    }
+
+    private static double bytesPerOp(RunResult result)
+    {
+        // prefixed with a middle dot by older versions of JMH
+        for (Map.Entry<String, Result> e
+                : result.getSecondaryResults().entrySet()) {
+            if (e.getKey().endsWith(NORM_SUFFIX)) {
+                return e.getValue().getScore();
+            }
+        }
+
+        throw new IllegalStateException("The GC profiler reported no "
+                + NORM_SUFFIX + " for " + result.getParams().getBenchmark());
+    }
+}
@@ -0,0 +1,121 @@
+package me.mazeika.uconfig;
+
+import me.mazeika.uconfig.parsing.ParserType;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ConfigDiffTest
+{
+    private static Config config(String text, ParserType type)
+    {
+        return Config.fromBytes(text.getBytes(StandardCharsets.UTF_8), type);
+    }
+
+    private static Config yaml(String text)
+    {
+        return config(text, ParserType.YAML);
+    }
+
+    @Test
+    public void testEqual()
+    {
+        final ConfigDiff diff = ConfigDiff.compare(
+                yaml("a: 1\nb: {c: [1, 2]}\n"),
+                yaml("b: {c: [1, 2]}\na: 1\n"));
+
+        assertThat(diff.isEmpty(), is(true));
+        assertThat(diff.toString(), is(""));
+    }
+
+    @Test
+    public void testChanges()
+    {
+        final ConfigDiff diff = ConfigDiff.compare(
+                yaml("a: 1\nb: {c: [1, 2, 3], d: x}\ne: {f: 1}\n"),
+                yaml("a: '1'\nb: {c: [1, 5], d: x, g: y}\nh: {i: 1}\n"));
+
+        assertThat(diff.getAdded(), is(Arrays.asList("b.g", "h")));
+        assertThat(diff.getRemoved(), is(Arrays.asList("b.c.2", "e")));
+        // the same type strictly, so 1 and '1' differ
+        assertThat(diff.getChanged(), is(Arrays.asList("a", "b.c.1")));
+        assertThat(diff.toString(), is("+ b.g\n+ h\n- b.c.2\n- e\n~ a\n"
+                + "~ b.c.1\n"));
+    }
+
+    @Test
+    public void testEscapedKeys()
+    {
+        final ConfigDiff diff = ConfigDiff.compare(
+                yaml("a.b: 1\n'1': {'#': 1}\n"),
+                yaml("a.b: 2\n'1': {'#': 2}\n"));
+
+        assertThat(diff.getChanged(), is(Arrays.asList("a\\.b", "\\1.\\#")));
+
+        final Config changed = yaml("a.b: 2\n'1': {'#': 2}\n");
+
+        for (String key : diff.getChanged()) {
+            assertThat(changed.getOrDefault(key, 0), is(2));
+        }
+    }
+
+    @Test
+    public void testAcrossTypes()
+    {
+        final Config xml = config("<root><path><to><value>hello</value>"
+                + "<int>5</int></to><item attr=\"world\"/></path></root>",
+                ParserType.XML);
+        final Config yaml = yaml("root:\n  path:\n    to:\n"
+                + "      value: hello\n      int: 5\n"
+                + "    item: {attr: world}\n");
+
+        assertThat(ConfigDiff.compare(xml, yaml).isEmpty(), is(true));
+        assertThat(ConfigDiff.compare(xml, yaml("root:\n  path:\n    to:\n"
+                + "      value: bye\n      int: 5\n"))
+                .toString(), is("- root.path.item\n~ root.path.to.value\n"));
+    }
+
+    @Test
+    public void testPropertiesAcrossTypes()
+    {
+        final Config properties = config("a.b = 1\na.c = x\nd = 2\n"
+                + "d.e = 3\n", ParserType.PROPERTIES);
+        final ConfigDiff diff = ConfigDiff.compare(properties,
+                yaml("a: {b: 1, c: y}\nd: 2\nd.e: 3\n"));
+
+        assertThat(diff.getChanged(), is(Collections.singletonList("a.c")));
+        assertThat(diff.getAdded().isEmpty(), is(true));
+        assertThat(diff.getRemoved().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testRootChanged()
+    {
+        assertThat(ConfigDiff.compare(yaml("a: 1\n"), yaml("- 1\n"))
+                .getChanged(), is(Collections.singletonList("")));
+    }
+
+    @Test
+    public void testLargeTrees()
+    {
+        final StringBuilder from = new StringBuilder();
+
+        for (int i = 0; i < 20000; i++) {
+            from.append("r").append(i).append(": {host: h").append(i % 7)
+                .append(", ports: [1, 2, 3]}\n");
+        }
+
+        final String to = from.toString().replace("r12345: {host: h4",
+                "r12345: {host: h5");
+        final ConfigDiff diff = ConfigDiff.compare(yaml(from.toString()),
+                yaml(to));
+
+        assertThat(diff.getChanged(),
+                is(Collections.singletonList("r12345.host")));
+    }
+}
@@ -0,0 +1,233 @@
+package me.mazeika.uconfig;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConfigEditorTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File copy(String resource) throws IOException
+    {
+        final File file = new File(folder.getRoot(), resource);
+
+        try (InputStream in = getClass().getResourceAsStream("/" + resource)) {
+            Files.copy(in, file.toPath());
+        }
+
+        return file;
+    }
+
+    @Test
+    public void testEditJSON() throws IOException
+    {
+        final File file = copy("config.json");
+        final Config config = Config.create(file, false);
+        final Config before = config.stream("").findFirst().get();
+
+        config.edit()
+              .set("path.to.value", "bye")
+              .set("path.to.new.list.0", 1)
+              .set("array.2", "appended")
+              .set("\\1.\\3", "digits")
+              .remove("path.to.double")
+              .commit();
+
+        for (Config c : Arrays.asList(config, Config.create(file))) {
+            assertThat(c.getOrDefault("path.to.value", ""), is("bye"));
+            assertThat(c.getOrDefault("path.to.new.list.0", 0), is(1));
+            assertThat(c.getOrDefault("array.2", ""), is("appended"));
+            assertThat(c.getOrDefault("\\1.\\3", ""), is("digits"));
+            assertThat(c.get("path.to.double").isPresent(), is(false));
+            assertThat(c.getOrDefault("path.to.int", 0), is(5));
+        }
+
+        // views of the old tree are not changed by the commit
+        assertThat(before.getOrDefault("to.value", ""), is("hello"));
+    }
+
+    @Test
+    public void testEditYAML() throws IOException
+    {
+        final File file = copy("config.yaml");
+
+        Config.create(file).edit()
+              .set("array.1.key", "there")
+              .set("server\\.name", "example.org")
+              .commit();
+
+        final Config reloaded = Config.create(file);
+
+        assertThat(reloaded.getOrDefault("array.1.key", ""), is("there"));
+        assertThat(reloaded.getOrDefault("server\\.name", ""),
+                is("example.org"));
+        assertThat(reloaded.getOrDefault("path.to.double", 0d), is(3.14));
+    }
+
+    @Test
+    public void testEditXML() throws IOException
+    {
+        final File file = copy("config.xml");
+
+        Config.create(file).edit()
+              .set("root.path.to.value", "bye")
+              .set("root.path.item.0.attr", "there")
+              .set("root.path.to.@id", 7)
+              .set("root.added", "new")
+              .commit();
+
+        final Config reloaded = Config.create(file);
+
+        assertThat(reloaded.getOrDefault("root.path.to.value", ""),
+                is("bye"));
+        assertThat(reloaded.getOrDefault("root.path.item.0.attr", ""),
+                is("there"));
+        assertThat(reloaded.getOrDefault("root.path.to.@id", 0), is(7));
+        assertThat(reloaded.getOrDefault("root.added", ""), is("new"));
+        assertThat(reloaded.getOrDefault("root.path.anotherBlank", "x"),
+                is(""));
+    }
+
+    @Test
+    public void testEditProperties() throws IOException
+    {
+        final File file = copy("config.properties");
+
+        Config.create(file).edit()
+              .set("path\\.to\\.value", "bye")
+              .set("port", 8080)
+              .remove("null")
+              .commit();
+
+        final Config reloaded = Config.create(file);
+
+        assertThat(reloaded.getOrDefault("path\\.to\\.value", ""),
+                is("bye"));
+        assertThat(reloaded.getOrDefault("port", 0), is(8080));
+        assertThat(reloaded.get("null").isPresent(), is(false));
+        assertThat(reloaded.getOrDefault("double", 0d), is(3.14));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEditPropertiesNested() throws IOException
+    {
+        Config.create(copy("config.properties")).edit().set("a.b", "c");
+    }
+
+    @Test
+    public void testFailedCommitChangesNothing() throws IOException
+    {
+        final File file = copy("config.json");
+        final byte[] contents = Files.readAllBytes(file.toPath());
+        final Config config = Config.create(file);
+
+        try {
+            config.edit()
+                  .set("path.to.value", "bye")
+                  .set("array.5", "past the end")
+                  .commit();
+            fail();
+        }
+        catch (IllegalArgumentException expected) {
+            // expected
+        }
+
+        assertThat(config.getOrDefault("path.to.value", ""), is("hello"));
+        assertThat(Files.readAllBytes(file.toPath()), is(contents));
+        assertThat(folder.getRoot().list().length, is(1));
+    }
+
+    @Test
+    public void testCommitValidatesSchema() throws IOException
+    {
+        final File file = copy("config.json");
+        final Config config = Config.builder()
+                .schema(Schema.builder()
+                        .require("path.to.int", Integer.class)
+                        .build())
+                .create(file);
+
+        try {
+            config.edit().set("path.to.int", "five").commit();
+            fail();
+        }
+        catch (SchemaException expected) {
+            // expected
+        }
+
+        assertThat(config.getOrDefault("path.to.int", 0), is(5));
+    }
+
+    @Test
+    public void testCommitRefreshesConstants() throws IOException
+    {
+        final Config config = Config.create(copy("config.json"), false);
+        final ConfigConstant<Integer> number =
+                config.constant("path.to.int", 0);
+        final ConfigConstant<String> removed =
+                config.constant("path.to.value", "gone");
+
+        assertThat(number.get(), is(5));
+
+        config.edit()
+              .set("path.to.int", 6)
+              .remove("path.to.value")
+              .commit();
+
+        assertThat(number.get(), is(6));
+        assertThat(removed.get(), is("gone"));
+
+        config.edit().set("path.to.int", "six").commit();
+
+        // no longer an integer, so read as the default
+        assertThat(number.get(), is(0));
+    }
+
+    @Test
+    public void testCommitNonNumericConstant() throws IOException
+    {
+        final File file = copy("config.properties");
+        final Config config = Config.create(file, false);
+        final ConfigConstant<Double> number = config.constant("double", 0d);
+
+        assertThat(number.get(), is(3.14));
+
+        // no longer a number, so read as the default rather than thrown
+        config.edit().set("double", "abc").commit();
+
+        assertThat(number.get(), is(0d));
+        assertThat(Config.create(file).getOrDefault("double", ""),
+                is("abc"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testEditNotFromFile()
+    {
+        Config.fromClasspath("/config.json").edit();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testEditInterpolated() throws IOException
+    {
+        Config.builder().interpolate(true).create(copy("config.json")).edit();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testEditWithIncludes() throws IOException
+    {
+        Config.builder().resolveIncludes(true).create(copy("config.json"))
+              .edit();
+    }
+}
@@ -0,0 +1,181 @@
+package me.mazeika.uconfig;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ConfigRegistryTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File resource(String name) throws URISyntaxException
+    {
+        return new File(getClass().getResource(name).toURI());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws URISyntaxException
+    {
+        final ConfigRegistry registry = new ConfigRegistry(2, Long.MAX_VALUE);
+        final Config json = registry.register("json",
+                resource("/config.json"));
+        final Config yaml = registry.register("yaml",
+                resource("/config.yaml"));
+        final Config xml = registry.register("xml", resource("/config.xml"));
+
+        assertThat(registry.loadedCount(), is(0));
+        assertThat(json.getOrDefault("path.to.value", ""), is("hello"));
+        assertThat(yaml.getOrDefault("path.to.value", ""), is("hello"));
+        assertThat(registry.loadedCount(), is(2));
+
+        // json is read again, so it gets a second chance over yaml
+        json.getOrDefault("path.to.value", "");
+        assertThat(xml.getOrDefault("root.path.to.value", ""), is("hello"));
+        assertThat(registry.loadedCount(), is(2));
+        assertThat(registry.loadCount(), is(3L));
+
+        assertThat(json.getOrDefault("path.to.value", ""), is("hello"));
+        assertThat(registry.loadCount(), is(3L));
+
+        // yaml was evicted, so it loads again
+        assertThat(yaml.getOrDefault("array.0", ""), is("item0"));
+        assertThat(registry.loadCount(), is(4L));
+        assertThat(registry.loadedCount(), is(2));
+    }
+
+    @Test
+    public void testMemoryBudget() throws URISyntaxException
+    {
+        final ConfigRegistry registry = new ConfigRegistry(100, 1);
+
+        registry.register("json", resource("/config.json"))
+                .getOrDefault("path.to.value", "");
+        registry.register("yaml", resource("/config.yaml"))
+                .getOrDefault("path.to.value", "");
+
+        // the fresh tree is always kept, even if over budget
+        assertThat(registry.loadedCount(), is(1));
+    }
+
+    private File copy(String resource) throws IOException
+    {
+        final File file = new File(folder.getRoot(), resource);
+
+        try (InputStream in = getClass().getResourceAsStream("/" + resource)) {
+            Files.copy(in, file.toPath());
+        }
+
+        return file;
+    }
+
+    @Test
+    public void testCommitReplacesTree() throws IOException
+    {
+        final File file = copy("config.json");
+        final ConfigRegistry registry = new ConfigRegistry(10, 1L << 30);
+        final Config config = registry.register("json", file);
+
+        config.getOrDefault("path.to.value", "");
+
+        final long bytes = registry.loadedBytes();
+
+        config.edit().set("path.to.value", "bye").commit();
+        config.edit().set("path.to.extra", "more").commit();
+
+        assertThat(config.getOrDefault("path.to.extra", ""), is("more"));
+        assertThat(registry.loadedCount(), is(1));
+        assertThat(registry.loadCount(), is(1L));
+        assertThat(registry.loadedBytes(), is(bytes
+                - ConfigRegistry.estimate("hello")
+                + ConfigRegistry.estimate("bye")
+                + 40 + ConfigRegistry.estimate("extra")
+                + ConfigRegistry.estimate("more")));
+    }
+
+    @Test
+    public void testReloadRefreshesConstants()
+            throws IOException, URISyntaxException
+    {
+        final File file = copy("config.properties");
+        final ConfigRegistry registry = new ConfigRegistry(1, Long.MAX_VALUE);
+        final Config config = registry.register("properties", file);
+        final ConfigConstant<String> value = config.constant("value", "");
+
+        assertThat(value.get(), is("hi"));
+        Files.write(file.toPath(), "value=bye\n".getBytes(
+                StandardCharsets.UTF_8));
+
+        // evicted by loading another, which leaves the constant as it was
+        registry.register("json", resource("/config.json"))
+                .getOrDefault("path.to.value", "");
+        assertThat(registry.loadCount(), is(2L));
+        assertThat(value.get(), is("hi"));
+
+        assertThat(config.getOrDefault("value", ""), is("bye"));
+        assertThat(registry.loadCount(), is(3L));
+        assertThat(value.get(), is("bye"));
+    }
+
+    @Test
+    public void testRegisterTwice() throws URISyntaxException
+    {
+        final ConfigRegistry registry = new ConfigRegistry(10, Long.MAX_VALUE);
+
+        assertThat(registry.register("a", resource("/config.json")),
+                sameInstance(registry.register("a", resource("/config.xml"))));
+        assertThat(registry.get("a").isPresent(), is(true));
+        assertThat(registry.unregister("a"), is(true));
+        assertThat(registry.get("a").isPresent(), is(false));
+        assertThat(registry.size(), is(0));
+    }
+
+    @Test
+    public void testConcurrentReadsLoadOnce() throws Exception
+    {
+        final ConfigRegistry registry = new ConfigRegistry(10, Long.MAX_VALUE);
+        final Config config = registry.register("json",
+                resource("/config.json"));
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<String>> results = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 64; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return config.getOrDefault("path.to.value", "");
+                }));
+            }
+
+            start.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(), is("hello"));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        assertThat(registry.loadCount(), is(1L));
+        assertThat(registry.loadedCount(), is(1));
+    }
+}
@@ -1,14 +1,42 @@
 package me.mazeika.uconfig;
 
+import me.mazeika.uconfig.parsing.Parser;
+import me.mazeika.uconfig.parsing.ParserType;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 public class ConfigTest
@@ -52,6 +80,211 @@ public class ConfigTest
                 .getResource("/config.json").toURI())), notNullValue());
     }
 
+    @Test
+    public void testCreateAsync() throws Exception
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            assertThat(Config.createAsync(new File(getClass()
+                    .getResource("/config.json").toURI()), executor).get()
+                    .getOrDefault("path.to.value", ""), is("hello"));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCreateWarm() throws Exception
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            assertThat(Config.createWarm(new File(getClass()
+                    .getResource("/config.yaml").toURI()), executor)
+                    .getOrDefault("array.0", ""), is("item0"));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCreateWarmBeforeExecutorRuns() throws Exception
+    {
+        final Runnable[] task = new Runnable[1];
+        final Config config = Config.createWarm(new File(getClass()
+                .getResource("/config.yaml").toURI()), r -> task[0] = r);
+
+        assertThat(config.getOrDefault("array.0", ""), is("item0"));
+        task[0].run();
+        assertThat(config.getOrDefault("array.1.key", ""), is("world"));
+    }
+
+    /**
+     * Virtual threads are pinned to their carrier when they block while
+     * holding a monitor, or wait to enter one. The loading thread must hold
+     * no monitor during the IO of a load, and the readers waiting for it must
+     * park rather than block on a monitor.
+     */
+    @Test
+    public void testConcurrentLazyLoadDoesNotPin() throws Exception
+    {
+        final CountDownLatch opened = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger opens = new AtomicInteger();
+        final Thread[] loader = new Thread[1];
+        final Config config = new UConfig(() -> {
+            loader[0] = Thread.currentThread();
+            opens.incrementAndGet();
+            opened.countDown();
+
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+
+            return new ByteArrayInputStream(
+                    "{\"a\": 1}".getBytes(StandardCharsets.UTF_8));
+        }, Parser.create(ParserType.JSON), true, LoadOptions.DEFAULT);
+        final ExecutorService executor = Executors.newFixedThreadPool(8,
+                r -> new Thread(r, "lazy-load-reader"));
+
+        try {
+            final List<Future<Integer>> reads = new ArrayList<>();
+
+            for (int i = 0; i < 8; i++) {
+                reads.add(executor.submit(() -> config.getOrDefault("a", 0)));
+            }
+
+            opened.await();
+
+            final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            final long deadline = System.currentTimeMillis() + 5000;
+            int waiting;
+
+            do {
+                waiting = 0;
+
+                for (ThreadInfo info : threads.getThreadInfo(
+                        threads.getAllThreadIds(), true, false)) {
+                    if (info == null
+                            || ! info.getThreadName().equals(
+                            "lazy-load-reader")) {
+                        continue;
+                    }
+
+                    assertThat(info.getThreadState() == Thread.State.BLOCKED,
+                            is(false));
+
+                    if (info.getThreadId() == loader[0].getId()) {
+                        assertThat(info.getLockedMonitors().length, is(0));
+                    }
+                    else if (info.getLockName() != null && info.getLockName()
+                            .startsWith(ReentrantLock.class.getName())) {
+                        waiting++;
+                    }
+                }
+            }
+            while (waiting < 7 && System.currentTimeMillis() < deadline);
+
+            assertThat(waiting, is(7));
+            release.countDown();
+
+            for (Future<Integer> read : reads) {
+                assertThat(read.get(), is(1));
+            }
+
+            assertThat(opens.get(), is(1));
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCreateWithInputStream() throws Exception
+    {
+        try (InputStream in = getClass().getResourceAsStream("/config.yaml")) {
+            assertThat(Config.create(in, ParserType.YAML)
+                    .getOrDefault("array.1.key", ""), is("world"));
+        }
+    }
+
+    @Test
+    public void testCreateWithInputStreamSniffed() throws Exception
+    {
+        try (InputStream in = getClass().getResourceAsStream("/config.xml")) {
+            assertThat(Config.create(in).getOrDefault("root.path.to.value", ""),
+                    is("hello"));
+        }
+    }
+
+    @Test
+    public void testFromClasspath()
+    {
+        assertThat(Config.fromClasspath("config.json")
+                .getOrDefault("path.to.value", ""), is("hello"));
+    }
+
+    @Test
+    public void testFromClasspathNoLazyLoad()
+    {
+        assertThat(Config.fromClasspath("/config.properties", false)
+                .getOrDefault("value", ""), is("hi"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromClasspathNonExistent()
+    {
+        Config.fromClasspath("nonexistent.json");
+    }
+
+    @Test
+    public void testFromBytes()
+    {
+        assertThat(Config.fromBytes("a: {b: 1}".getBytes(
+                StandardCharsets.UTF_8), ParserType.YAML)
+                .getOrDefault("a.b", 0), is(1));
+    }
+
+    @Test
+    public void testFromBytesSniffed()
+    {
+        assertThat(Config.fromBytes("{\"a\": [\"x\"]}".getBytes(
+                StandardCharsets.UTF_8)).getOrDefault("a.0", ""), is("x"));
+        assertThat(Config.fromBytes("# comment\na.b = 2".getBytes(
+                StandardCharsets.UTF_8)).getOrDefault("a\\.b", 0), is(2));
+        assertThat(Config.fromBytes("a:\n  b: 3".getBytes(
+                StandardCharsets.UTF_8)).getOrDefault("a.b", 0), is(3));
+        assertThat(Config.fromBytes("!!map\na: {b: 4}".getBytes(
+                StandardCharsets.UTF_8)).getOrDefault("a.b", 0), is(4));
+        assertThat(Config.fromBytes("!comment\na=5".getBytes(
+                StandardCharsets.UTF_8)).getOrDefault("a", 0), is(5));
+        assertThat(Config.fromBytes("! comment\n!x\na.b=6".getBytes(
+                StandardCharsets.UTF_8)).getOrDefault("a\\.b", 0), is(6));
+    }
+
+    @Test(expected = IOException.class)
+    public void testByteBufferResetWithoutMark() throws IOException
+    {
+        new ByteBufferInputStream(ByteBuffer.wrap(new byte[1])).reset();
+    }
+
+    @Test
+    public void testFromByteBuffer()
+    {
+        final ByteBuffer buf = ByteBuffer.wrap(
+                "value=hi".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(Config.fromBytes(buf).getOrDefault("value", ""), is("hi"));
+        assertThat(buf.position(), is(0));
+    }
+
     @Test
     public void testGetOrDefaultForJSONRegularPath()
     {
@@ -176,6 +409,60 @@ public class ConfigTest
                 is("nonexistent"));
     }
 
+    @Test
+    public void testGetOrDefaultForXMLNamedContent()
+    {
+        final Config config = Config.fromBytes(("<root><content>a</content>"
+                + "<item content=\"b\">c</item></root>")
+                .getBytes(StandardCharsets.UTF_8), ParserType.XML);
+
+        assertThat(config.getOrDefault("root.content", ""), is("a"));
+        assertThat(config.getOrDefault("root.item", ""), is("c"));
+        assertThat(config.getOrDefault("root.item.content", ""), is("b"));
+    }
+
+    @Test
+    public void testGetOrDefaultForXMLAttributeAndChild()
+    {
+        final Config config = Config.fromBytes(("<root><a b=\"attr\">"
+                + "<b>child</b></a></root>").getBytes(StandardCharsets.UTF_8),
+                ParserType.XML);
+
+        assertThat(config.getOrDefault("root.a.b", ""), is("child"));
+        assertThat(config.getOrDefault("root.a.@b", ""), is("attr"));
+    }
+
+    @Test
+    public void testGetOrDefaultForXMLTyped()
+    {
+        final Config config = Config.fromBytes(("<root port=\"8080\">"
+                + "<ratio>0.5</ratio><on>true</on><zip>007</zip></root>")
+                .getBytes(StandardCharsets.UTF_8), ParserType.XML);
+
+        assertThat(config.getOrDefault("root.port", 0), is(8080));
+        assertThat(config.getOrDefault("root.ratio", 0d), is(0.5));
+        assertThat(config.getOrDefault("root.on", false), is(true));
+        assertThat(config.getOrDefault("root.zip", ""), is("007"));
+    }
+
+    @Test
+    public void testGetOrDefaultForXMLNull()
+    {
+        final Config config = Config.fromBytes(("<root a=\"null\">"
+                + "<v>null</v><w>NULL</w><i>x</i><i>null</i>"
+                + "<t id=\"1\">null</t></root>")
+                .getBytes(StandardCharsets.UTF_8), ParserType.XML);
+
+        // read as missing, as a null is in the other formats
+        assertThat(config.getOrDefault("root.v", "x"), is("x"));
+        assertThat(config.getOrDefault("root.w", 1), is(1));
+        assertThat(config.getOrDefault("root.a", "x"), is("x"));
+        assertThat(config.getOrDefault("root.i.0", ""), is("x"));
+        assertThat(config.getOrDefault("root.i.1", "y"), is("y"));
+        assertThat(config.getOrDefault("root.t", "x"), is("x"));
+        assertThat(config.getOrDefault("root.t.id", 0), is(1));
+    }
+
     @Test
     public void testGetOrDefaultForYAMLRegularPath()
     {
@@ -264,4 +551,270 @@ public class ConfigTest
     {
         assertThat(jsonConfig.<Integer>get("path.to.null").orElse(3) / 2, is(1));
     }
+
+    @Test
+    public void testStreamForJSONArray()
+    {
+        assertThat(jsonConfig.stream("array")
+                .map(c -> c.getOrDefault("key", "x"))
+                .collect(Collectors.toList()), is(Arrays.asList("x", "world")));
+    }
+
+    @Test
+    public void testStreamForYAMLNonExistent()
+    {
+        assertThat(yamlConfig.stream("path.x").count(), is(0L));
+    }
+
+    @Test
+    public void testValuesForJSONEscaped()
+    {
+        assertThat(jsonConfig.<String>values("\\23.\\#.dot\\.path")
+                .collect(Collectors.toList()),
+                is(Arrays.asList("item0", "item1")));
+    }
+
+    @Test
+    public void testValuesParallel()
+    {
+        final StringBuilder json = new StringBuilder("[0");
+
+        for (int i = 1; i < 10000; i++) {
+            json.append(',').append(i);
+        }
+
+        final Config config = Config.fromBytes(json.append(']').toString()
+                .getBytes(StandardCharsets.UTF_8), ParserType.JSON);
+
+        assertThat(config.<Integer>values("").parallel()
+                .mapToLong(Integer::longValue).sum(), is(49995000L));
+    }
+
+    @Test
+    public void testForEachForYAML()
+    {
+        final Map<String, Object> values = new LinkedHashMap<>();
+
+        yamlConfig.forEach("path.to", (key, child) -> values.put(key, null));
+
+        assertThat(values.keySet(), is(new LinkedHashSet<>(Arrays.asList(
+                "value", "double", "int", "null", "empty"))));
+    }
+
+    @Test
+    public void testKeysForJSON()
+    {
+        assertThat(jsonConfig.keys("path.to"), is(new HashSet<>(
+                Arrays.asList("value", "double", "int", "null"))));
+        assertThat(jsonConfig.keys("array"),
+                is(new HashSet<>(Arrays.asList("0", "1"))));
+        assertThat(jsonConfig.keys("path.to.value").isEmpty(), is(true));
+    }
+
+    private static Config interpolated(String yaml)
+    {
+        return Config.builder().interpolate(true).fromBytes(
+                yaml.getBytes(StandardCharsets.UTF_8), ParserType.YAML);
+    }
+
+    @Test
+    public void testInterpolation()
+    {
+        System.setProperty("uconfig.test.port", "8080");
+
+        try {
+            final Config config = interpolated("host: example.org\n"
+                    + "url: http://${server.name}:${uconfig.test.port}/\n"
+                    + "server: {name: '${host}'}\n"
+                    + "list: ['${missing:-none}', '$${host}']\n");
+
+            assertThat(config.getOrDefault("url", ""),
+                    is("http://example.org:8080/"));
+            assertThat(config.getOrDefault("list.0", ""), is("none"));
+            assertThat(config.getOrDefault("list.1", ""), is("${host}"));
+        }
+        finally {
+            System.clearProperty("uconfig.test.port");
+        }
+    }
+
+    @Test
+    public void testInterpolationEscapedOnce()
+    {
+        System.setProperty("uconfig.test.port", "8080");
+
+        try {
+            // whichever key is resolved first, the escape holds
+            for (String yaml : Arrays.asList(
+                    "b: '$${uconfig.test.port}'\na: '${b}'\n",
+                    "a: '${b}'\nb: '$${uconfig.test.port}'\n")) {
+                final Config config = interpolated(yaml);
+
+                assertThat(config.getOrDefault("a", ""),
+                        is("${uconfig.test.port}"));
+                assertThat(config.getOrDefault("b", ""),
+                        is("${uconfig.test.port}"));
+            }
+        }
+        finally {
+            System.clearProperty("uconfig.test.port");
+        }
+    }
+
+    @Test
+    public void testInterpolationNestedFallback()
+    {
+        final Config config = interpolated("host: example.org\n"
+                + "a: '${missing:-${host}}'\n"
+                + "b: '${missing:-x${other:-y}z}/${host}'\n");
+
+        assertThat(config.getOrDefault("a", ""), is("example.org"));
+        assertThat(config.getOrDefault("b", ""), is("xyz/example.org"));
+    }
+
+    @Test
+    public void testInterpolationForProperties()
+    {
+        assertThat(Config.builder().interpolate(true).fromBytes(
+                "a.b=x\nc=${a.b}y\n".getBytes(StandardCharsets.UTF_8),
+                ParserType.PROPERTIES).getOrDefault("c", ""), is("xy"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testInterpolationCycle()
+    {
+        interpolated("a: '${b}'\nb: '${c}'\nc: '${a}'\n");
+    }
+
+    @Test(expected = ParseException.class)
+    public void testInterpolationUnresolved()
+    {
+        interpolated("a: '${uconfig.test.nonexistent}'\n");
+    }
+
+    private static ParseException parseError(String input, ParserType type)
+    {
+        try {
+            Config.fromBytes(input.getBytes(StandardCharsets.UTF_8), type);
+        }
+        catch (ParseException e) {
+            return e;
+        }
+
+        throw new AssertionError("Expected a ParseException");
+    }
+
+    @Test
+    public void testParseErrorLocation()
+    {
+        final ParseException yaml = parseError("a: 1\nb: [1, 2\nc: 3\n",
+                ParserType.YAML);
+        final ParseException json = parseError("{\n  \"a\": 1,\n  \"b\" 2\n}",
+                ParserType.JSON);
+        final ParseException xml = parseError("<root>\n  <a></b>\n</root>",
+                ParserType.XML);
+
+        assertThat(yaml.getLine(), is(3));
+        assertThat(json.getLine(), is(3));
+        assertThat(xml.getLine(), is(2));
+        assertThat(xml.getMessage().contains("line 2, column"), is(true));
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testMissingFile()
+    {
+        Config.create(new File("nonexistent.json"), false);
+    }
+
+    @Test
+    public void testTypeMismatch()
+    {
+        try {
+            jsonConfig.getOrDefault("path.to.value", 0);
+            throw new AssertionError("Expected a ConfigTypeException");
+        }
+        catch (ConfigTypeException e) {
+            assertThat(e.getKey(), is("path.to.value"));
+            assertThat(e.getExpectedType(), is((Object) Integer.class));
+            assertThat(e.getActualType(), is((Object) String.class));
+        }
+    }
+
+    @Test
+    public void testSupertypeDefault()
+    {
+        final Config config = Config.fromBytes("n: 5\nd: 1.5\nb: true\n"
+                .getBytes(StandardCharsets.UTF_8), ParserType.YAML);
+
+        assertThat(config.getOrDefault("n", (Number) 0L), is((Number) 5));
+        assertThat(config.getOrDefault("d", (Number) 0), is((Number) 1.5));
+        assertThat(config.getOrDefault("b", (Object) Boolean.FALSE),
+                is((Object) true));
+        assertThat(config.getOrDefault("n", (Comparable<?>) 0L),
+                is((Object) 5));
+    }
+
+    @Test
+    public void testMapDefaultForAnyMap()
+    {
+        final Map<String, Object> none = new LinkedHashMap<>();
+
+        assertThat(xmlConfig.getOrDefault("root.path.to", none).isEmpty(),
+                is(false));
+    }
+
+    @Test
+    public void testExplain() throws URISyntaxException
+    {
+        final Config config = Config.builder().trackLocations(true).create(
+                new File(getClass().getResource("/config.json").toURI()));
+
+        assertThat(config.explain("path.to.value"), is("'path.to.value' in "
+                + new File(getClass().getResource("/config.json").toURI())
+                .getPath() + " (JSON)"
+                + "\n  path: a map of 1 entries at line 2, column 3"
+                + "\n  to: a map of 4 entries at line 3, column 5"
+                + "\n  value: 'hello' (String) at line 4, column 7"));
+        assertThat(config.explain("array.5").endsWith(
+                "5: not found; past the end of a list of 2 elements"),
+                is(true));
+        assertThat(config.explain("path.nope").endsWith(
+                "nope: not found; keys here are [to]"), is(true));
+    }
+
+    @Test
+    public void testExplainForXML() throws URISyntaxException
+    {
+        final Config config = Config.builder().trackLocations(true).create(
+                new File(getClass().getResource("/config.xml").toURI()));
+        final String explained = config.explain("root.path.item.0.attr");
+
+        assertThat(explained.contains(
+                "\n  0: an element with 0 children and 1 attributes "
+                        + "at line 6, column"), is(true));
+        assertThat(explained.contains(
+                "\n  attr: 'world' (String) at line 6, column"), is(true));
+        assertThat(explained.endsWith("value: the element's text"),
+                is(false));
+    }
+
+    @Test
+    public void testConstant()
+    {
+        final Config config = Config.fromClasspath("/config.yaml");
+        final ConfigConstant<String> value =
+                config.constant("path.to.value", "");
+
+        assertThat(value.get(), is(config.getOrDefault("path.to.value", "")));
+        assertThat(config.constant("path.to.value", ""), sameInstance(value));
+        assertThat(config.constant("path.to.value", "other"),
+                not(sameInstance(value)));
+        assertThat(config.constant("path.nonexistent", 7).get(), is(7));
+    }
+
+    @Test(expected = ConfigTypeException.class)
+    public void testConstantWrongType()
+    {
+        Config.fromClasspath("/config.yaml").constant("path.to.value", 0);
+    }
 }
@@ -0,0 +1,61 @@
+package me.mazeika.uconfig;
+
+import me.mazeika.uconfig.parsing.ParserType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap retained by configs with many similar list entries, with
+ * and without interning. Run with a fixed heap for stable numbers, e.g.
+ * {@code java -Xms1g -Xmx1g -cp ... me.mazeika.uconfig.FootprintBenchmark}.
+ */
+public class FootprintBenchmark
+{
+    private static final int ROUTES = 10_000;
+    private static final int COPIES = 20;
+
+    public static void main(String[] args)
+    {
+        final StringBuilder yaml = new StringBuilder("routes:\n");
+
+        for (int i = 0; i < ROUTES; i++) {
+            yaml.append("  - host: backend-").append(i % 16)
+                    .append(".example.org\n")
+                    .append("    port: 8080\n")
+                    .append("    weight: ").append(i % 4).append('\n')
+                    .append("    protocol: https\n")
+                    .append("    region: us-east-1\n");
+        }
+
+        final byte[] bytes = yaml.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (boolean interning : new boolean[] { false, true, false, true }) {
+            final long before = usedHeap();
+            final List<Config> configs = new ArrayList<>();
+
+            for (int i = 0; i < COPIES; i++) {
+                configs.add(Config.builder().intern(interning)
+                        .fromBytes(bytes, ParserType.YAML));
+            }
+
+            final long retained = (usedHeap() - before) / COPIES;
+
+            System.out.printf("interning=%-5s retained per config: %,d bytes"
+                    + " (%d routes)%n", interning, retained, configs.size()
+                    * ROUTES / COPIES);
+        }
+    }
+
+    private static long usedHeap()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
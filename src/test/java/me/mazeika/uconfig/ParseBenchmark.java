@@ -0,0 +1,93 @@
+package me.mazeika.uconfig;
+
+import me.mazeika.uconfig.parsing.Parser;
+import me.mazeika.uconfig.parsing.ParserType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading a large document shaped like a routing table, with many
+ * top-level entries, sequentially ({@code threads} of 0) and in parallel on
+ * a pool of the given size, to show how parallel parsing scales with cores,
+ * e.g. {@code java -cp ... org.openjdk.jmh.Main ParseBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParseBenchmark
+{
+    @Param({ "JSON", "YAML" })
+    public ParserType type;
+
+    @Param({ "0", "1", "2", "4", "8" })
+    public int threads;
+
+    /**
+     * The number of top-level entries, of about 150 bytes each.
+     */
+    @Param("200000")
+    public int routes;
+
+    private String text;
+    private Parser parser;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        final Map<String, Object> table = new LinkedHashMap<>();
+
+        for (int i = 0; i < routes; i++) {
+            final Map<String, Object> route = new LinkedHashMap<>();
+
+            route.put("host", "backend" + (i % 97) + ".example.org");
+            route.put("port", 8000 + i % 1000);
+            route.put("weight", (i % 10) / 10.0);
+            route.put("tags", Arrays.asList("zone-" + (i % 3), "v" + i % 5));
+            table.put("/api/v1/resource" + i, route);
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Parser.create(type).write(table, out);
+        text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        parser = Parser.create(type);
+        parser.setParallel(threads > 0);
+        pool = new ForkJoinPool(Math.max(threads, 1));
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Object parse()
+    {
+        // run on the pool, so that sections are parsed on it too
+        return pool.submit(() -> parser.parse(text)).join();
+    }
+}
@@ -0,0 +1,102 @@
+package me.mazeika.uconfig;
+
+import me.mazeika.uconfig.parsing.ParserType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures steady-state reads of already loaded configs, for each type. Run
+ * with the GC profiler to see what each read allocates, e.g.
+ * {@code java -cp ... org.openjdk.jmh.Main ReadBenchmark -prof gc}, or let
+ * {@link AllocationBudgetTest} check it against the budget.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ReadBenchmark
+{
+    @Param({ "JSON", "YAML", "XML", "PROPERTIES" })
+    public ParserType type;
+
+    private Config config;
+    private String key;
+    private String indexedKey;
+    private int[] indices;
+    private ConfigConstant<String> constant;
+
+    @Setup
+    public void setUp()
+    {
+        final String extension = type.name().toLowerCase();
+
+        config = Config.fromClasspath("/config." + extension, false);
+
+        switch (type) {
+            case XML:
+                key = "root.path.to.value";
+                indexedKey = "root.path.item.#.attr";
+                indices = new int[] { 0 };
+                break;
+            case PROPERTIES:
+                key = "path\\.to\\.value";
+                indexedKey = "value";
+                indices = new int[] { 0 };
+                break;
+            default:
+                key = "path.to.value";
+                indexedKey = "array.#.key";
+                indices = new int[] { 1 };
+                break;
+        }
+
+        constant = config.constant(key, "");
+    }
+
+    @Benchmark
+    public String getOrDefault()
+    {
+        return config.getOrDefault(key, "");
+    }
+
+    @Benchmark
+    public String getOrDefaultWithIndices()
+    {
+        return config.getOrDefaultWithIndices(indexedKey, "", indices);
+    }
+
+    /**
+     * Consumes the optional as callers do, so that it can be optimized away
+     * like theirs, rather than handing it to JMH.
+     */
+    @Benchmark
+    public String get()
+    {
+        return config.<String>get(key).orElse("");
+    }
+
+    @Benchmark
+    public String constant()
+    {
+        return constant.get();
+    }
+
+    @Benchmark
+    public String getMissing()
+    {
+        return config.getOrDefault("path.nonexistent", "");
+    }
+}
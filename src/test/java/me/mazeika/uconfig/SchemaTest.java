@@ -0,0 +1,121 @@
+package me.mazeika.uconfig;
+
+import me.mazeika.uconfig.parsing.ParserType;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SchemaTest
+{
+    private enum Mode
+    {
+        FAST, SAFE
+    }
+
+    private static Config properties(String input, Schema schema)
+    {
+        return Config.builder().schema(schema).fromBytes(
+                input.getBytes(StandardCharsets.UTF_8), ParserType.PROPERTIES);
+    }
+
+    @Test
+    public void testConvertsPropertiesStrings()
+    {
+        final Config config = properties(
+                "port=8080\nsize=9000000000\ntimeout=30s\nmode=fast\n"
+                        + "debug=TRUE\nratio=0.5\n",
+                Schema.builder()
+                        .require("port", Integer.class)
+                        .require("size", Long.class)
+                        .require("timeout", Duration.class)
+                        .require("mode", Mode.class)
+                        .require("debug", Boolean.class)
+                        .require("ratio", Double.class)
+                        .build());
+
+        assertThat(config.<Integer>get("port").get(), is(8080));
+        assertThat(config.<Long>get("size").get(), is(9000000000L));
+        assertThat(config.<Duration>get("timeout").get(),
+                is(Duration.ofSeconds(30)));
+        assertThat(config.<Mode>get("mode").get(), is(Mode.FAST));
+        assertThat(config.<Boolean>get("debug").get(), is(true));
+        assertThat(config.getOrDefault("ratio", 0d), is(0.5));
+    }
+
+    @Test
+    public void testConvertsListElements()
+    {
+        final Config config = Config.builder()
+                .schema(Schema.builder()
+                        .require("routes.#.weight", Long.class)
+                        .optional("routes.#.timeout", Duration.class)
+                        .build())
+                .fromBytes(("routes:\n  - weight: 1\n    timeout: PT1M\n"
+                        + "  - weight: 2\n").getBytes(StandardCharsets.UTF_8),
+                        ParserType.YAML);
+
+        assertThat(config.getOrDefaultWithIndices("routes.#.weight", 0L, 1),
+                is(2L));
+        assertThat(config.<Duration>get("routes.0.timeout").get(),
+                is(Duration.ofMinutes(1)));
+    }
+
+    @Test
+    public void testReportsAllErrors()
+    {
+        try {
+            properties("port=http\n", Schema.builder()
+                    .require("port", Integer.class)
+                    .require("host", String.class)
+                    .build());
+            fail();
+        }
+        catch (SchemaException e) {
+            assertThat(e.getErrors(),
+                    hasItem("port: expected integer, found 'http'"));
+            assertThat(e.getErrors(), hasItem("host: missing"));
+            assertThat(e.getErrors().size(), is(2));
+        }
+    }
+
+    @Test
+    public void testLoadedFromFile() throws URISyntaxException
+    {
+        final Config config = Config.builder()
+                .schema(Schema.load(new File(getClass()
+                        .getResource("/schema.json").toURI())))
+                .lazyLoad(false)
+                .create(new File(getClass()
+                        .getResource("/config.json").toURI()));
+
+        assertThat(config.<Long>get("path.to.int").get(), is(5L));
+        assertThat(config.getOrDefault("path.to.value", ""), is("hello"));
+    }
+
+    @Test(expected = SchemaException.class)
+    public void testLoadedFromFileEnumMismatch() throws URISyntaxException
+    {
+        Config.builder()
+                .schema(Schema.load(new File(getClass()
+                        .getResource("/schema.json").toURI())))
+                .fromBytes("{\"path\": {\"to\": {\"value\": \"x\", \"int\": 1}},"
+                        .concat(" \"array\": []}")
+                        .getBytes(StandardCharsets.UTF_8), ParserType.JSON);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConflictingDeclarations()
+    {
+        Schema.builder()
+                .require("a.b", Integer.class)
+                .require("a.b.c", Integer.class);
+    }
+}
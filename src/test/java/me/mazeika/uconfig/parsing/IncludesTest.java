@@ -0,0 +1,206 @@
+package me.mazeika.uconfig.parsing;
+
+import me.mazeika.uconfig.ParseException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class IncludesTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Includes includes = new Includes();
+
+    private File write(String name, String contents) throws IOException
+    {
+        final File file = new File(folder.getRoot(), name);
+
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+
+        return file;
+    }
+
+    private Map<?, ?> parse(File file) throws IOException
+    {
+        final Parser parser = Parser.create(file.getName());
+
+        parser.setIncludes(includes, file.getParentFile().toPath());
+
+        try (InputStream in = new FileInputStream(file)) {
+            return (Map<?, ?>) parser.parse(in);
+        }
+    }
+
+    private static Object get(Object tree, Object... keys)
+    {
+        for (Object key : keys) {
+            tree = key instanceof Integer ? ((List<?>) tree).get((Integer) key)
+                    : ((Map<?, ?>) tree).get(key);
+        }
+
+        return tree;
+    }
+
+    @Test
+    public void testIncludeTag() throws IOException
+    {
+        write("db.yml", "host: localhost\nport: 5432\n");
+        write("parts/users.yml", "- alice\n- !include ../bob.yml\n");
+        write("bob.yml", "name: bob\n");
+
+        final Map<?, ?> tree = parse(write("app.yml",
+                "db: !include db.yml\nusers: !include parts/users.yml\n"));
+
+        assertThat(get(tree, "db", "port"), is(5432));
+        assertThat(get(tree, "users", 0), is("alice"));
+        assertThat(get(tree, "users", 1, "name"), is("bob"));
+    }
+
+    @Test
+    public void testIncludeKey() throws IOException
+    {
+        write("db.json", "{\"host\": \"localhost\"}");
+        write("cache.yml", "size: 64\n");
+
+        final Map<?, ?> tree = parse(write("app.json", "{"
+                + "\"db\": {\"$include\": \"db.json\"},"
+                + "\"caches\": [{\"$include\": \"cache.yml\"}],"
+                + "\"other\": {\"$include\": \"db.json\", \"extra\": 1}}"));
+
+        assertThat(get(tree, "db", "host"), is("localhost"));
+        assertThat(get(tree, "caches", 0, "size"), is(64));
+        // only a map holding nothing else is a directive
+        assertThat(get(tree, "other", "$include"), is("db.json"));
+    }
+
+    @Test
+    public void testWithoutIncludes() throws IOException
+    {
+        final File file = write("app.json",
+                "{\"db\": {\"$include\": \"db.json\"}}");
+        final Map<?, ?> tree;
+
+        try (InputStream in = new FileInputStream(file)) {
+            tree = (Map<?, ?>) Parser.create(ParserType.JSON).parse(in);
+        }
+
+        assertThat(get(tree, "db", "$include"), is("db.json"));
+    }
+
+    @Test
+    public void testManyIncludes() throws IOException
+    {
+        final StringBuilder app = new StringBuilder();
+
+        for (int i = 0; i < 64; i++) {
+            write("part" + i + ".yml", "value: " + i + "\n");
+            app.append("part").append(i).append(": !include part")
+               .append(i).append(".yml\n");
+        }
+
+        final Map<?, ?> tree = parse(write("app.yml", app.toString()));
+
+        for (int i = 0; i < 64; i++) {
+            assertThat(get(tree, "part" + i, "value"), is(i));
+        }
+    }
+
+    @Test
+    public void testOnlyChangedFragmentsReparsed() throws IOException
+    {
+        final File a = write("a.yml", "value: 1\n");
+        final File app = write("app.yml", "a: !include a.yml\n"
+                + "b: !include b.yml\nagain: !include b.yml\n");
+
+        write("b.yml", "value: 2\n");
+
+        assertThat(get(parse(app), "a", "value"), is(1));
+        assertThat(includes.parses(), is(2));
+
+        final Map<?, ?> tree = parse(app);
+
+        assertThat(includes.parses(), is(2));
+        // every site gets its own copy, so changing one changes no other
+        assertThat(get(tree, "b") == get(tree, "again"), is(false));
+
+        write("a.yml", "value: 10\n");
+        Files.setLastModifiedTime(a.toPath(), FileTime.fromMillis(
+                a.lastModified() + 2000));
+
+        assertThat(get(parse(app), "a", "value"), is(10));
+        assertThat(get(parse(app), "b", "value"), is(2));
+        assertThat(includes.parses(), is(3));
+    }
+
+    @Test
+    public void testCycle() throws IOException
+    {
+        write("a.yml", "b: !include b.yml\n");
+        write("b.yml", "a: !include a.yml\n");
+
+        try {
+            parse(write("app.yml", "a: !include a.yml\n"));
+            fail();
+        }
+        catch (ParseException e) {
+            assertThat(e.getMessage(), containsString("Include cycle"));
+            assertThat(e.getMessage(), containsString("a.yml -> "));
+        }
+    }
+
+    @Test
+    public void testUnsupportedType() throws IOException
+    {
+        write("db.xml", "<db/>");
+
+        try {
+            parse(write("app.yml", "db: !include db.xml\n"));
+            fail();
+        }
+        catch (ParseException e) {
+            assertThat(e.getMessage(), containsString("db.xml"));
+        }
+    }
+
+    @Test
+    public void testFragmentSyntaxError() throws IOException
+    {
+        write("db.yml", "a: [1, 2\n");
+
+        try {
+            parse(write("app.yml", "db: !include db.yml\n"));
+            fail();
+        }
+        catch (ParseException e) {
+            assertThat(e.getMessage(), containsString("db.yml"));
+        }
+    }
+
+    @Test
+    public void testMultiDocumentFragment() throws IOException
+    {
+        write("db.yml", "host: localhost\n---\nport: 5432\n");
+
+        final Map<?, ?> tree = parse(write("app.yml", "db: !include db.yml\n"));
+
+        assertThat(get(tree, "db", "host"), is("localhost"));
+        assertThat(get(tree, "db", "port"), is(5432));
+    }
+}
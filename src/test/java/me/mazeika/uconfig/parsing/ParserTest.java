@@ -0,0 +1,127 @@
+package me.mazeika.uconfig.parsing;
+
+import me.mazeika.uconfig.ParseException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ParserTest
+{
+    private static final String ROUTES =
+            "routes:\n"
+                    + "  - {host: example.org, port: 8080}\n"
+                    + "  - {host: example.org, port: 8080}\n";
+
+    private static List<Map<String, Object>> routes(Parser parser)
+    {
+        // noinspection unchecked
+        return (List<Map<String, Object>>)
+                ((Map<String, Object>) parser.parse(ROUTES)).get("routes");
+    }
+
+    private static Object key(Map<String, Object> map, String name)
+    {
+        for (String key : map.keySet()) {
+            if (key.equals(name)) {
+                return key;
+            }
+        }
+
+        return null;
+    }
+
+    private static ParserType detect(String text) throws IOException
+    {
+        return Parser.detect(new ByteArrayInputStream(
+                text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testDetectTags() throws IOException
+    {
+        assertThat(detect("!!map\na: 1\n"), is(ParserType.YAML));
+        // a local tag or a comment, so the next line decides
+        assertThat(detect("!include base.yml\n"), is(ParserType.YAML));
+        assertThat(detect("!include\na: {b: 1}\n"), is(ParserType.YAML));
+        assertThat(detect("!comment\na=1\n"), is(ParserType.PROPERTIES));
+        assertThat(detect("! comment\n!!\na=1\n"),
+                is(ParserType.PROPERTIES));
+    }
+
+    @Test
+    public void testInterning()
+    {
+        final Parser parser = Parser.create(ParserType.YAML);
+
+        parser.setInterning(true);
+
+        final List<Map<String, Object>> routes = routes(parser);
+
+        assertThat(key(routes.get(0), "host"),
+                sameInstance(key(routes.get(1), "host")));
+        assertThat(routes.get(0).get("host"),
+                sameInstance(routes.get(1).get("host")));
+        assertThat(routes.get(0).get("port"),
+                sameInstance(routes.get(1).get("port")));
+    }
+
+    @Test
+    public void testNoInterning()
+    {
+        final List<Map<String, Object>> routes =
+                routes(Parser.create(ParserType.YAML));
+
+        assertThat(key(routes.get(0), "host"),
+                not(sameInstance(key(routes.get(1), "host"))));
+        assertThat(routes.get(0).get("host"), is(routes.get(1).get("host")));
+    }
+
+    @Test
+    public void testMultiDocument()
+    {
+        final Map<?, ?> tree = (Map<?, ?>) Parser.create(ParserType.YAML)
+                .parse("a: 1\nnested: {x: 1, y: 2}\n---\n---\n"
+                        + "b: 2\nnested: {y: 3}\n");
+
+        assertThat(tree.get("a"), is(1));
+        assertThat(tree.get("b"), is(2));
+        assertThat(((Map<?, ?>) tree.get("nested")).get("x"), is(1));
+        assertThat(((Map<?, ?>) tree.get("nested")).get("y"), is(3));
+    }
+
+    @Test
+    public void testSingleDocumentNotMap()
+    {
+        assertThat(Parser.create(ParserType.YAML).parse("---\n- 1\n"),
+                is(Collections.<Object>singletonList(1)));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testMultiDocumentNotMap()
+    {
+        Parser.create(ParserType.YAML).parse("a: 1\n---\n- 1\n");
+    }
+
+    @Test
+    public void testInterningProperties()
+    {
+        final Parser parser = Parser.create(ParserType.PROPERTIES);
+
+        parser.setInterning(true);
+
+        final Map<?, ?> properties = (Map<?, ?>) parser.parse(
+                "a=example.org\nb=example.org\n");
+
+        assertThat(properties.get("a"), sameInstance(properties.get("b")));
+    }
+}
@@ -0,0 +1,191 @@
+package me.mazeika.uconfig.parsing;
+
+import me.mazeika.uconfig.ParseException;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SectionsTest
+{
+    /**
+     * Small enough to split the generated documents into dozens of sections.
+     */
+    private static final int SIZE = 512;
+
+    private static final String[] AWKWARD = {
+            "plain", "with, comma", "with: colon", "{braces}", "[brackets]",
+            "\"quoted\"", "it's", "back\\slash", "# not a comment",
+            "- not an item", "multi\nline", "tab\there", ""
+    };
+
+    /**
+     * Generates a document with many top-level entries, whose values nest
+     * and hold strings that look like structure.
+     */
+    private static Object document(boolean list)
+    {
+        final Random random = new Random(42);
+        final Map<String, Object> map = new LinkedHashMap<>();
+        final List<Object> items = new ArrayList<>();
+
+        for (int i = 0; i < 300; i++) {
+            final Map<String, Object> route = new LinkedHashMap<>();
+
+            route.put("host", "host" + random.nextInt(50) + ".example.org");
+            route.put("port", random.nextInt(65536));
+            route.put("weight", random.nextDouble());
+            route.put("enabled", random.nextBoolean());
+            route.put("note", AWKWARD[random.nextInt(AWKWARD.length)]);
+            route.put("tags", Arrays.asList(
+                    AWKWARD[random.nextInt(AWKWARD.length)],
+                    Arrays.asList(i, null)));
+
+            if (list) {
+                items.add(route);
+            }
+            else {
+                map.put("route" + i, route);
+            }
+        }
+
+        return list ? items : map;
+    }
+
+    private static String write(Object tree, ParserType type)
+            throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Parser.create(type).write(tree, out);
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void assertParity(String text, ParserType type)
+    {
+        assertParity(text, type, SIZE);
+    }
+
+    /**
+     * Asserts that parsing in sections of the given size matches parsing the
+     * whole document, after asserting that it is split at all.
+     */
+    private static void assertParity(String text, ParserType type, int size)
+    {
+        assertThat(Sections.split(text, type, size), notNullValue());
+
+        final SnakeYAMLParser parser = (SnakeYAMLParser) Parser.create(type);
+        final Object expected = parser.parse(text);
+
+        for (int i = 0; i < 10; i++) {
+            final Object actual = parser.parseInParallel(text, size);
+
+            assertThat(actual, is(expected));
+
+            if (expected instanceof Map) {
+                // equal maps may still differ in order
+                assertThat(new ArrayList<>(((Map<?, ?>) actual).keySet()),
+                        is(new ArrayList<>(((Map<?, ?>) expected).keySet())));
+            }
+        }
+    }
+
+    @Test
+    public void testJSONMapParity() throws IOException
+    {
+        final String text = write(document(false), ParserType.JSON);
+
+        assertParity(text, ParserType.JSON);
+    }
+
+    @Test
+    public void testJSONListParity() throws IOException
+    {
+        final String text = write(document(true), ParserType.JSON);
+        final Sections sections = Sections.split(text, ParserType.JSON, SIZE);
+
+        assertThat(sections.isList(), is(true));
+        assertParity(text, ParserType.JSON);
+    }
+
+    @Test
+    public void testYAMLMapParity() throws IOException
+    {
+        final String text = "---\n# routes\n"
+                + write(document(false), ParserType.YAML);
+
+        assertParity(text, ParserType.YAML);
+    }
+
+    @Test
+    public void testYAMLListParity() throws IOException
+    {
+        final String text = write(document(true), ParserType.YAML);
+        final Sections sections = Sections.split(text, ParserType.YAML, SIZE);
+
+        assertThat(sections.isList(), is(true));
+        assertParity(text, ParserType.YAML);
+    }
+
+    @Test
+    public void testDuplicateKeysParity()
+    {
+        assertParity("{\"a\": 1, \"b\": {\"x\": 1}, \"a\": 2, \"b\": 3}",
+                ParserType.JSON, 0);
+        assertThat(Sections.split("{\"a\": 1, \"a\": 2}", ParserType.JSON,
+                0).get().size(), is(2));
+    }
+
+    @Test
+    public void testNotSplit()
+    {
+        // several documents, mixed entries and items, and scalars
+        assertThat(Sections.split("a: 1\n---\nb: 2\n", ParserType.YAML, 0),
+                nullValue());
+        assertThat(Sections.split("a: 1\n- 2\n", ParserType.YAML, 0),
+                nullValue());
+        assertThat(Sections.split("\"a, b\"", ParserType.JSON, 0),
+                nullValue());
+        assertThat(Sections.split("{\"a\": 1}", ParserType.JSON, 0),
+                nullValue());
+    }
+
+    @Test
+    public void testMisplitFallsBack()
+    {
+        // the quoted value's second line looks like an entry of its own
+        assertParity("a: \"one\nb: two\"\nc: 3\n", ParserType.YAML, 0);
+        // an alias to an anchor in another section
+        assertParity("a:\n  x: &x 1\nb:\n  y: *x\n", ParserType.YAML, 0);
+    }
+
+    @Test
+    public void testErrorInSection()
+    {
+        final SnakeYAMLParser parser =
+                (SnakeYAMLParser) Parser.create(ParserType.JSON);
+
+        try {
+            parser.parseInParallel("{\"a\": 1,\n\"b\": [1,, 2],\n\"c\": 3}", 0);
+            fail();
+        }
+        catch (ParseException e) {
+            // as reported by a sequential parse of the whole document
+            assertThat(e.getLine(), is(2));
+        }
+    }
+}